@@ -1,6 +1,9 @@
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 public class Administrator extends User {
@@ -10,10 +13,16 @@ public class Administrator extends User {
 
     public Administrator(String username, String password, String name, String email, 
                         String contactInfo, int securityLevel) {
-        super(username, password, name, email, contactInfo, UserRole.ADMINISTRATOR);
+        this(username, password, name, email, contactInfo, securityLevel, false);
+    }
+
+    // Used when loading saved accounts, whose password and email were validated when they were created
+    Administrator(String username, String password, String name, String email, String contactInfo,
+                  int securityLevel, boolean stored) {
+        super(username, password, name, email, contactInfo, UserRole.ADMINISTRATOR, stored);
         this.adminId = UUID.randomUUID().toString();
         this.securityLevel = securityLevel;
-        this.systemLogs = new ArrayList<>();
+        this.systemLogs = Collections.synchronizedList(new ArrayList<>());
     }
 
     public String getAdminId() {
@@ -33,7 +42,9 @@ public class Administrator extends User {
     }
 
     public List<String> getSystemLogs() {
-        return new ArrayList<>(systemLogs);
+        synchronized (systemLogs) {
+            return new ArrayList<>(systemLogs);
+        }
     }
 
     public void addSystemLog(String log) {
@@ -45,48 +56,37 @@ public class Administrator extends User {
 
     @Override
     public boolean login(String username, String password) {
-        if (!isLoggedIn()) {
-            boolean success = super.login(username, password);
-            if (success) {
-                String logMessage = String.format("Administrator %s (ID: %s) logged in at %s", 
-                    getName(), adminId, LocalDateTime.now());
-                addSystemLog(logMessage);
-                System.out.println("Administrator logged in successfully");
-            }
-            return success;
+        boolean success = super.login(username, password);
+        if (success) {
+            String logMessage = String.format("Administrator %s (ID: %s) logged in at %s", 
+                getName(), adminId, LocalDateTime.now());
+            addSystemLog(logMessage);
+            System.out.println("Administrator logged in successfully");
         }
-        return false;
+        return success;
     }
 
     @Override
-    public void logout() {
-        if (isLoggedIn()) {
-            super.logout();
-            String logMessage = String.format("Administrator %s (ID: %s) logged out at %s", 
-                getName(), adminId, LocalDateTime.now());
-            addSystemLog(logMessage);
-            System.out.println("Administrator logged out successfully");
-        } else {
-            throw new IllegalStateException("Administrator is not logged in");
-        }
+    public void logout(Session session) {
+        requireSession(session, "Administrator is not logged in");
+        String logMessage = String.format("Administrator %s (ID: %s) logged out at %s", 
+            getName(), adminId, LocalDateTime.now());
+        addSystemLog(logMessage);
+        System.out.println("Administrator logged out successfully");
     }
 
     @Override
-    public void updateProfile() {
-        if (!isLoggedIn()) {
-            throw new IllegalStateException("Administrator must be logged in to update profile");
-        }
+    public void updateProfile(Session session) {
+        requireSession(session, "Administrator must be logged in to update profile");
         String logMessage = String.format("Administrator %s (ID: %s) updated profile at %s", 
             getName(), adminId, LocalDateTime.now());
         addSystemLog(logMessage);
         System.out.println("Administrator profile updated successfully");
     }
 
-    public User createUser(String username, String password, String name, String email, 
+    public User createUser(Session session, String username, String password, String name, String email, 
                           String contactInfo, UserRole role) {
-        if (!isLoggedIn()) {
-            throw new IllegalStateException("Administrator must be logged in to create users");
-        }
+        requireSession(session, "Administrator must be logged in to create users");
 
         if (securityLevel < 3) {
             throw new IllegalStateException("Insufficient security level to create users");
@@ -117,10 +117,8 @@ public class Administrator extends User {
         return newUser;
     }
 
-    public void modifySystemSettings(String setting, String value) {
-        if (!isLoggedIn()) {
-            throw new IllegalStateException("Administrator must be logged in to modify settings");
-        }
+    public void modifySystemSettings(Session session, String setting, String value) {
+        requireSession(session, "Administrator must be logged in to modify settings");
 
         if (securityLevel < 4) {
             throw new IllegalStateException("Insufficient security level to modify system settings");
@@ -133,10 +131,8 @@ public class Administrator extends User {
         System.out.println("System setting modified successfully");
     }
 
-    public void manageUserAccess(User user, boolean grantAccess) {
-        if (!isLoggedIn()) {
-            throw new IllegalStateException("Administrator must be logged in to manage user access");
-        }
+    public void manageUserAccess(Session session, User user, boolean grantAccess) {
+        requireSession(session, "Administrator must be logged in to manage user access");
 
         if (securityLevel < 3) {
             throw new IllegalStateException("Insufficient security level to manage user access");
@@ -149,6 +145,16 @@ public class Administrator extends User {
         System.out.println("User access " + (grantAccess ? "granted" : "revoked") + " successfully");
     }
 
+    public SystemReport generateSystemReport(Session session, FlightRepository flights,
+                                             Collection<Booking> bookings, LocalDate startDate, LocalDate endDate) {
+        requireSession(session, "Administrator must be logged in to generate reports");
+
+        SystemReport report = SystemReport.generate(flights, bookings, startDate, endDate);
+        addSystemLog(String.format("System report for %s to %s generated by Administrator %s (ID: %s) at %s",
+            startDate, endDate, getName(), adminId, LocalDateTime.now()));
+        return report;
+    }
+
     @Override
     public String toString() {
         return "Administrator{" +
@@ -1,22 +1,35 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 public class Agent extends User {
+    public static final int COMMISSION_PERCENT = 5;
+
     private String agentId;
     private String department;
-    private double commission;
+    private long commission;
     private List<Booking> managedBookings;
+    private final RevenueLedger ledger = new RevenueLedger();
 
     public Agent(String username, String password, String name, String email, 
                 String contactInfo, String department) {
-        super(username, password, name, email, contactInfo, UserRole.AGENT);
+        this(username, password, name, email, contactInfo, department, false);
+    }
+
+    // Used when loading saved accounts, whose password and email were validated when they were created
+    Agent(String username, String password, String name, String email, String contactInfo, String department,
+          boolean stored) {
+        super(username, password, name, email, contactInfo, UserRole.AGENT, stored);
         this.agentId = UUID.randomUUID().toString();
         this.department = department;
-        this.commission = 0.0;
-        this.managedBookings = new ArrayList<>();
+        this.commission = 0;
+        this.managedBookings = Collections.synchronizedList(new ArrayList<>());
     }
 
     public String getAgentId() {
@@ -31,11 +44,11 @@ public class Agent extends User {
         this.department = department;
     }
 
-    public double getCommission() {
+    public synchronized long getCommission() {
         return commission;
     }
 
-    public void setCommission(double commission) {
+    public synchronized void setCommission(long commission) {
         if (commission >= 0) {
             this.commission = commission;
         } else {
@@ -43,8 +56,14 @@ public class Agent extends User {
         }
     }
 
+    public RevenueLedger getLedger() {
+        return ledger;
+    }
+
     public List<Booking> getManagedBookings() {
-        return new ArrayList<>(managedBookings);
+        synchronized (managedBookings) {
+            return new ArrayList<>(managedBookings);
+        }
     }
 
     public void addManagedBooking(Booking booking) {
@@ -53,40 +72,29 @@ public class Agent extends User {
 
     @Override
     public boolean login(String username, String password) {
-        if (!isLoggedIn()) {
-            boolean success = super.login(username, password);
-            if (success) {
-                System.out.println("Agent " + getName() + " (ID: " + agentId + ") logged in successfully");
-            }
-            return success;
+        boolean success = super.login(username, password);
+        if (success) {
+            System.out.println("Agent " + getName() + " (ID: " + agentId + ") logged in successfully");
         }
-        return false;
+        return success;
     }
 
     @Override
-    public void logout() {
-        if (isLoggedIn()) {
-            super.logout();
-            System.out.println("Agent " + getName() + " (ID: " + agentId + ") logged out successfully");
-        } else {
-            throw new IllegalStateException("Agent is not logged in");
-        }
+    public void logout(Session session) {
+        requireSession(session, "Agent is not logged in");
+        System.out.println("Agent " + getName() + " (ID: " + agentId + ") logged out successfully");
     }
 
     @Override
-    public void updateProfile() {
-        if (!isLoggedIn()) {
-            throw new IllegalStateException("Agent must be logged in to update profile");
-        }
+    public void updateProfile(Session session) {
+        requireSession(session, "Agent must be logged in to update profile");
         System.out.println("Agent profile updated successfully");
     }
 
-    public Flight createFlight(String flightNumber, String airline, String origin, 
+    public Flight createFlight(Session session, String flightNumber, String airline, String origin, 
                              String destination, LocalDateTime departureTime, 
                              LocalDateTime arrivalTime) {
-        if (!isLoggedIn()) {
-            throw new IllegalStateException("Agent must be logged in to create flights");
-        }
+        requireSession(session, "Agent must be logged in to create flights");
 
         if (flightNumber == null || airline == null || origin == null || 
             destination == null || departureTime == null || arrivalTime == null) {
@@ -102,11 +110,21 @@ public class Agent extends User {
         return flight;
     }
 
-    public Booking createBookingForCustomer(Customer customer, Flight flight, 
+    /**
+     * Adds every new flight in a schedule file; see {@link FlightImporter}.
+     */
+    public FlightImporter.Summary importFlights(Session session, FlightRepository flights, Path file)
+            throws IOException {
+        requireSession(session, "Agent must be logged in to create flights");
+
+        FlightImporter.Summary summary = new FlightImporter(flights).importFile(file);
+        System.out.println(summary);
+        return summary;
+    }
+
+    public Booking createBookingForCustomer(Session session, Customer customer, Flight flight, 
                                           List<Passenger> passengers, SeatClass seatClass) {
-        if (!isLoggedIn()) {
-            throw new IllegalStateException("Agent must be logged in to create bookings");
-        }
+        requireSession(session, "Agent must be logged in to create bookings");
 
         if (customer == null || flight == null || passengers == null || seatClass == null) {
             throw new IllegalArgumentException("All booking details must be provided");
@@ -116,27 +134,46 @@ public class Agent extends User {
             throw new IllegalArgumentException("At least one passenger must be specified");
         }
 
-        // Check if flight has available seats
-        if (!flight.hasAvailableSeats(seatClass, passengers.size())) {
+        // Reserve the seats up front; the CAS in tryReserve keeps concurrent agents from overselling
+        if (!flight.tryReserve(seatClass, passengers.size())) {
             throw new IllegalStateException("Not enough seats available in " + seatClass + " class");
         }
 
-        Booking booking = new Booking(customer, flight, passengers, seatClass);
-        managedBookings.add(booking);
-        
-        // Calculate and update commission
-        double bookingCommission = calculateCommission(booking);
-        this.commission += bookingCommission;
-
+        Booking booking = recordBooking(customer, flight, passengers, seatClass);
         System.out.println("Booking created successfully for customer " + customer.getName());
-        System.out.println("Commission earned: $" + bookingCommission);
+        System.out.println("Commission earned: $" + Money.format(calculateCommission(booking)));
         return booking;
     }
 
-    public boolean modifyBooking(Booking booking, SeatClass newSeatClass) {
-        if (!isLoggedIn()) {
-            throw new IllegalStateException("Agent must be logged in to modify bookings");
+    /**
+     * Books each item it can for its customer and returns a result per item; see {@link BatchBooking}.
+     */
+    public List<BatchBooking.Result> createBookings(Session session, List<BatchBooking.Item> items,
+                                                    UserDirectory users, FlightRepository flights) {
+        requireSession(session, "Agent must be logged in to create bookings");
+
+        List<BatchBooking.Result> results = BatchBooking.book(this, items, users, flights);
+        long booked = results.stream().filter(BatchBooking.Result::isBooked).count();
+        System.out.println("Batch booked " + booked + " of " + results.size() + " bookings");
+        return results;
+    }
+
+    // Creates the booking for seats that have already been reserved and credits the commission
+    Booking recordBooking(Customer customer, Flight flight, List<Passenger> passengers, SeatClass seatClass) {
+        Booking booking = new Booking(customer, flight, passengers, seatClass, this);
+        managedBookings.add(booking);
+        customer.addBooking(booking);
+        booking.recordInLedgers();
+
+        long bookingCommission = calculateCommission(booking);
+        synchronized (this) {
+            this.commission += bookingCommission;
         }
+        return booking;
+    }
+
+    public boolean modifyBooking(Session session, Booking booking, SeatClass newSeatClass) {
+        requireSession(session, "Agent must be logged in to modify bookings");
 
         if (booking == null || newSeatClass == null) {
             throw new IllegalArgumentException("Booking and seat class must be provided");
@@ -146,25 +183,16 @@ public class Agent extends User {
             throw new IllegalArgumentException("Booking not found in agent's managed bookings");
         }
 
-        if (booking.getStatus() == BookingStatus.CANCELLED) {
+        // Checked under the booking's lock, so a cancellation or hold expiry cannot interleave with the move
+        if (!booking.changeSeatClass(newSeatClass)) {
             throw new IllegalStateException("Cannot modify a cancelled booking");
         }
-
-        // Check if new seat class is available
-        if (!booking.getFlight().hasAvailableSeats(newSeatClass, booking.getPassengers().size())) {
-            throw new IllegalStateException("Not enough seats available in " + newSeatClass + " class");
-        }
-
-        // Update booking
-        booking.setSeatClass(newSeatClass);
         System.out.println("Booking modified successfully to " + newSeatClass + " class");
         return true;
     }
 
-    public List<Booking> generateBookingReport(LocalDateTime startDate, LocalDateTime endDate) {
-        if (!isLoggedIn()) {
-            throw new IllegalStateException("Agent must be logged in to generate reports");
-        }
+    public List<Booking> generateBookingReport(Session session, LocalDateTime startDate, LocalDateTime endDate) {
+        requireSession(session, "Agent must be logged in to generate reports");
 
         if (startDate == null || endDate == null) {
             throw new IllegalArgumentException("Start and end dates must be provided");
@@ -174,7 +202,7 @@ public class Agent extends User {
             throw new IllegalArgumentException("Start date must be before end date");
         }
 
-        return managedBookings.stream()
+        return getManagedBookings().stream()
             .filter(booking -> {
                 LocalDateTime bookingTime = booking.getCreationTime();
                 return !bookingTime.isBefore(startDate) && !bookingTime.isAfter(endDate);
@@ -182,9 +210,27 @@ public class Agent extends User {
             .collect(Collectors.toList());
     }
 
-    private double calculateCommission(Booking booking) {
+    /**
+     * Revenue and booking counts for bookings this agent made between the two dates, from the running ledger
+     * rather than a scan of the managed bookings.
+     */
+    public RevenueLedger.Summary summarizeBookings(Session session, LocalDate startDate, LocalDate endDate) {
+        requireSession(session, "Agent must be logged in to generate reports");
+
+        if (startDate == null || endDate == null) {
+            throw new IllegalArgumentException("Start and end dates must be provided");
+        }
+
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("Start date must be before end date");
+        }
+
+        return ledger.summarize(startDate, endDate);
+    }
+
+    private long calculateCommission(Booking booking) {
         // Simple commission calculation: 5% of the booking total
-        return booking.getTotalPrice() * 0.05;
+        return Money.percentOf(booking.getTotalPrice(), COMMISSION_PERCENT);
     }
 
     @Override
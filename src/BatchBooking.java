@@ -0,0 +1,139 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Many bookings made by one agent in a single call, such as a tour operator's group bookings.
+ *
+ * Items are grouped by flight and each flight's seats are reserved for the whole group at once, all classes
+ * together (see {@link Flight#tryReserve(int[])}). When a flight cannot seat the whole group, its items are
+ * reserved one at a time in request order, so the ones that fit are still booked. Every item gets a
+ * {@link Result}: its booking, or why it was not booked.
+ */
+public class BatchBooking {
+    private static final SeatClass[] SEAT_CLASSES = SeatClass.values();
+
+    private BatchBooking() {
+    }
+
+    /**
+     * One booking request: a customer, a flight, a seat class and the passengers to seat.
+     */
+    public static class Item {
+        private final String customerUsername;
+        private final String flightNumber;
+        private final SeatClass seatClass;
+        private final List<Passenger> passengers;
+
+        public Item(String customerUsername, String flightNumber, SeatClass seatClass, List<Passenger> passengers) {
+            this.customerUsername = customerUsername;
+            this.flightNumber = flightNumber;
+            this.seatClass = seatClass;
+            this.passengers = passengers == null ? new ArrayList<>() : new ArrayList<>(passengers);
+        }
+
+        public String getCustomerUsername() {
+            return customerUsername;
+        }
+
+        public String getFlightNumber() {
+            return flightNumber;
+        }
+
+        public SeatClass getSeatClass() {
+            return seatClass;
+        }
+
+        public List<Passenger> getPassengers() {
+            return new ArrayList<>(passengers);
+        }
+    }
+
+    /**
+     * The outcome of the item at the same position in the request.
+     */
+    public static class Result {
+        private final int index;
+        private final Booking booking;
+        private final String error;
+
+        private Result(int index, Booking booking, String error) {
+            this.index = index;
+            this.booking = booking;
+            this.error = error;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public boolean isBooked() {
+            return booking != null;
+        }
+
+        // Null when the item was not booked
+        public Booking getBooking() {
+            return booking;
+        }
+
+        // Null when the item was booked
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Books every item it can for the agent and returns one result per item, in request order.
+     */
+    static List<Result> book(Agent agent, List<Item> items, UserDirectory users, FlightRepository flights) {
+        if (agent == null || items == null || users == null || flights == null) {
+            throw new IllegalArgumentException("Agent, items, users and flights must be provided");
+        }
+
+        Result[] results = new Result[items.size()];
+        Customer[] customers = new Customer[items.size()];
+        Map<Flight, List<Integer>> itemsByFlight = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            String error = null;
+            Flight flight = null;
+            if (item == null) {
+                error = "Booking details must be provided";
+            } else if (item.seatClass == null) {
+                error = "Seat class must be provided";
+            } else if (item.passengers.isEmpty()) {
+                error = "At least one passenger must be specified";
+            } else if ((customers[i] = users.findCustomer(item.customerUsername)) == null) {
+                error = "Customer not found";
+            } else if ((flight = flights.findByFlightNumber(item.flightNumber)) == null) {
+                error = "Flight not found";
+            }
+            if (error != null) {
+                results[i] = new Result(i, null, error);
+            } else {
+                itemsByFlight.computeIfAbsent(flight, f -> new ArrayList<>()).add(i);
+            }
+        }
+
+        for (Map.Entry<Flight, List<Integer>> group : itemsByFlight.entrySet()) {
+            Flight flight = group.getKey();
+            int[] seats = new int[SEAT_CLASSES.length];
+            for (int i : group.getValue()) {
+                seats[items.get(i).seatClass.ordinal()] += items.get(i).passengers.size();
+            }
+            boolean groupReserved = flight.tryReserve(seats);
+            for (int i : group.getValue()) {
+                Item item = items.get(i);
+                if (!groupReserved && !flight.tryReserve(item.seatClass, item.passengers.size())) {
+                    results[i] = new Result(i, null, "Not enough seats available in " + item.seatClass + " class");
+                    continue;
+                }
+                results[i] = new Result(i, agent.recordBooking(customers[i], flight, item.passengers, item.seatClass),
+                                        null);
+            }
+        }
+        return Arrays.asList(results);
+    }
+}
@@ -0,0 +1,881 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Standalone performance checks, run with {@code java -cp src Benchmark <name> [size]}.
+ */
+public class Benchmark {
+    private static final LocalDateTime SCHEDULE_START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    public static void main(String[] args) throws Exception {
+        String name = args.length > 0 ? args[0] : "search";
+        switch (name) {
+            case "search":
+                benchmarkSearch(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "connections":
+                benchmarkConnections(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "seats":
+                benchmarkSeats(args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000);
+                break;
+            case "journal":
+                benchmarkJournal(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "load":
+                benchmarkLoad(args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000);
+                break;
+            case "storage":
+                benchmarkStorage(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "heap":
+                benchmarkHeap(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "report":
+                benchmarkReport(args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000);
+                break;
+            case "export":
+                benchmarkExport(args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000);
+                break;
+            case "users":
+                benchmarkUsers(args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000);
+                break;
+            case "login":
+                benchmarkLogin(args.length > 1 ? Integer.parseInt(args[1]) : 2);
+                break;
+            case "server":
+                benchmarkServer(args.length > 1 ? Integer.parseInt(args[1]) : 2_000);
+                break;
+            case "batch":
+                benchmarkBatch(args.length > 1 ? Integer.parseInt(args[1]) : 10_000);
+                break;
+            case "import":
+                benchmarkImport(args.length > 1 ? Integer.parseInt(args[1]) : 500_000);
+                break;
+            case "holds":
+                benchmarkHolds(args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000);
+                break;
+            default:
+                System.err.println("Unknown benchmark: " + name);
+                System.err.println("Available: search, connections, seats, journal, load, storage, heap, report, export, users, login, server, batch, import, holds");
+        }
+    }
+
+    private static void benchmarkSearch(int flightCount) {
+        int airports = 100;
+        int days = 365;
+        Random random = new Random(42);
+
+        System.out.println("Building schedule of " + flightCount + " flights...");
+        FlightRepository flights = new FlightRepository();
+        for (int i = 0; i < flightCount; i++) {
+            flights.add(randomFlight(i, airports, days, random));
+        }
+
+        int queries = 100_000;
+        long[] latencies = new long[queries];
+        long found = 0;
+        for (int i = 0; i < queries + 20_000; i++) {
+            String origin = airport(random.nextInt(airports));
+            String destination = airport(random.nextInt(airports));
+            LocalDate date = SCHEDULE_START.toLocalDate().plusDays(random.nextInt(days));
+            long start = System.nanoTime();
+            List<Flight> result = flights.findByRouteAndDate(origin, destination, date);
+            long elapsed = System.nanoTime() - start;
+            // The first 20k queries only warm up the JIT
+            if (i >= 20_000) {
+                latencies[i - 20_000] = elapsed;
+                found += result.size();
+            }
+        }
+
+        Arrays.sort(latencies);
+        System.out.println("Route/date search over " + flightCount + " flights, " + queries + " queries");
+        System.out.println("  flights returned: " + found);
+        System.out.printf("  p50: %.1f us%n", latencies[queries / 2] / 1_000.0);
+        System.out.printf("  p99: %.1f us%n", latencies[(int) (queries * 0.99)] / 1_000.0);
+        System.out.printf("  max: %.1f us%n", latencies[queries - 1] / 1_000.0);
+    }
+
+    private static void benchmarkConnections(int flightCount) {
+        int airports = 100;
+        int days = 365;
+        Random random = new Random(42);
+
+        System.out.println("Building schedule of " + flightCount + " flights...");
+        FlightRepository flights = new FlightRepository();
+        for (int i = 0; i < flightCount; i++) {
+            flights.add(randomFlight(i, airports, days, random));
+        }
+
+        ConnectionSearch search = new ConnectionSearch(flights, Duration.ofMinutes(45), Duration.ofHours(6));
+        int queries = 500;
+        long[] latencies = new long[queries];
+        long found = 0;
+        for (int i = 0; i < queries + 100; i++) {
+            String origin = airport(random.nextInt(airports));
+            String destination = airport(random.nextInt(airports));
+            LocalDate date = SCHEDULE_START.toLocalDate().plusDays(random.nextInt(days));
+            long start = System.nanoTime();
+            List<Itinerary> result = search.search(origin, destination, date, ConnectionSearch.MAX_STOPS);
+            long elapsed = System.nanoTime() - start;
+            if (i >= 100) {
+                latencies[i - 100] = elapsed;
+                found += result.size();
+            }
+        }
+
+        Arrays.sort(latencies);
+        System.out.println("Connection search (up to 2 stops, 45m-6h layovers) over " + flightCount
+            + " flights, " + queries + " queries");
+        System.out.println("  itineraries returned: " + found);
+        System.out.printf("  p50: %.2f ms%n", latencies[queries / 2] / 1_000_000.0);
+        System.out.printf("  p99: %.2f ms%n", latencies[(int) (queries * 0.99)] / 1_000_000.0);
+        System.out.printf("  max: %.2f ms%n", latencies[queries - 1] / 1_000_000.0);
+    }
+
+    private static void benchmarkSeats(int operationsPerRun) throws InterruptedException {
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            // A handful of flights per thread, so threads keep contending on shared inventory
+            Flight[] schedule = new Flight[Math.max(1, threads * 4)];
+            for (int i = 0; i < schedule.length; i++) {
+                schedule[i] = new Flight("FL" + i, "Airline", "A", "B", SCHEDULE_START, SCHEDULE_START.plusHours(2));
+                schedule[i].setAvailableSeats(SeatClass.ECONOMY, 64);
+            }
+
+            int perThread = operationsPerRun / threads;
+            AtomicLong oversold = new AtomicLong();
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                workers[t] = new Thread(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < perThread; i++) {
+                        Flight flight = schedule[random.nextInt(schedule.length)];
+                        int seats = 1 + random.nextInt(4);
+                        if (flight.tryReserve(SeatClass.ECONOMY, seats)) {
+                            if (flight.getAvailableSeats(SeatClass.ECONOMY) < 0) {
+                                oversold.incrementAndGet();
+                            }
+                            flight.release(SeatClass.ECONOMY, seats);
+                        }
+                    }
+                });
+            }
+
+            long start = System.nanoTime();
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            boolean consistent = true;
+            for (Flight flight : schedule) {
+                consistent &= flight.getAvailableSeats(SeatClass.ECONOMY) == 64;
+            }
+            System.out.printf("%2d threads: %,.0f reserve+release/sec, oversold=%d, counts restored=%s%n",
+                threads, perThread * (double) threads / (elapsed / 1_000_000_000.0), oversold.get(), consistent);
+        }
+    }
+
+    private static void benchmarkJournal(int records) throws IOException {
+        Path file = Files.createTempFile("benchmark", ".journal");
+        try {
+            long start;
+            try (Journal journal = Journal.open(file, Integer.getInteger("journal.batchSize", 256),
+                                                Long.getLong("journal.flushIntervalMillis", 5))) {
+                start = System.nanoTime();
+                for (int i = 0; i < records; i++) {
+                    journal.append(Journal.BOOKING, "BK" + i + "|customer" + (i % 1000) + "|FL" + (i % 5000)
+                        + "|RESERVED|ECONOMY|500.00|2024-03-19 15:00");
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            int[] replayed = new int[1];
+            long replayStart = System.nanoTime();
+            try (Journal journal = Journal.open(file, 1, 1000)) {
+                journal.replay((type, payload) -> replayed[0]++);
+            }
+            long replayElapsed = System.nanoTime() - replayStart;
+
+            System.out.printf("Journal: %,d booking records, %.1f MB%n", records, Files.size(file) / 1e6);
+            System.out.printf("  write (incl. final fsync): %,.0f records/sec%n", records / (elapsed / 1e9));
+            System.out.printf("  replay: %,d records, %,.0f records/sec%n", replayed[0], replayed[0] / (replayElapsed / 1e9));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void benchmarkLoad(int records) throws IOException {
+        Path file = Files.createTempFile("benchmark", ".txt");
+        try {
+            writeFlightFile(file, records);
+            System.out.printf("Parsing %,d flight records, %.1f MB%n", records, Files.size(file) / 1e6);
+
+            // Alternate the two parsers so both see a warm JIT and page cache
+            for (int run = 0; run < 3; run++) {
+                long start = System.nanoTime();
+                long checksum = 0;
+                try (BufferedReader reader = Files.newBufferedReader(file)) {
+                    reader.readLine();
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        String[] parts = line.split("\\|");
+                        checksum += LocalDateTime.parse(parts[4], DATE_FORMAT).getMinute()
+                            + Money.parse(parts[6]) + Integer.parseInt(parts[9]) + parts[0].length();
+                    }
+                }
+                report("readLine + split", records, start, checksum);
+
+                start = System.nanoTime();
+                checksum = 0;
+                boolean header = true;
+                for (ByteBuffer chunk : RecordScanner.map(file)) {
+                    RecordScanner record = new RecordScanner(chunk);
+                    while (record.next()) {
+                        if (header) {
+                            header = false;
+                            continue;
+                        }
+                        checksum += record.parseDateTime(4).getMinute()
+                            + record.parseCents(6) + record.parseInt(9) + record.string(0).length();
+                    }
+                }
+                report("mapped scanner  ", records, start, checksum);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void benchmarkStorage(int records) throws IOException {
+        Path text = Files.createTempFile("benchmark", ".txt");
+        Path binary = Files.createTempFile("benchmark", ".bin");
+        try {
+            writeFlightFile(text, records);
+            List<String> lines = Files.readAllLines(text);
+            BinarySnapshot.writeFlights(binary, lines.subList(1, lines.size()));
+            lines = null;
+            System.out.printf("Flight snapshot of %,d records: text %.1f MB, binary %.1f MB (%.1fx smaller)%n",
+                records, Files.size(text) / 1e6, Files.size(binary) / 1e6, Files.size(text) / (double) Files.size(binary));
+
+            for (int run = 0; run < 3; run++) {
+                long start = System.nanoTime();
+                long[] checksum = new long[1];
+                boolean header = true;
+                for (ByteBuffer chunk : RecordScanner.map(text)) {
+                    RecordScanner record = new RecordScanner(chunk);
+                    while (record.next()) {
+                        if (header) {
+                            header = false;
+                            continue;
+                        }
+                        Flight flight = new Flight(record.string(0), record.string(1), record.string(2),
+                                                   record.string(3), record.parseDateTime(4), record.parseDateTime(5));
+                        for (SeatClass seatClass : SeatClass.values()) {
+                            flight.setPrice(seatClass, record.parseCents(6 + seatClass.ordinal()));
+                            flight.setAvailableSeats(seatClass, record.parseInt(9 + seatClass.ordinal()));
+                        }
+                        checksum[0] += flight.getAvailableSeats(SeatClass.ECONOMY);
+                    }
+                }
+                report("text load  ", records, start, checksum[0]);
+
+                start = System.nanoTime();
+                checksum[0] = 0;
+                BinarySnapshot.readFlights(binary, flight -> checksum[0] += flight.getAvailableSeats(SeatClass.ECONOMY));
+                report("binary load", records, start, checksum[0]);
+            }
+        } finally {
+            Files.deleteIfExists(text);
+            Files.deleteIfExists(binary);
+        }
+    }
+
+    private static void benchmarkHeap(int flightCount) {
+        // Names are built up front, so only what a Flight itself retains is counted
+        String[] numbers = new String[flightCount];
+        for (int i = 0; i < flightCount; i++) {
+            numbers[i] = "FL" + i;
+        }
+        String[] airports = new String[100];
+        for (int i = 0; i < airports.length; i++) {
+            airports[i] = airport(i);
+        }
+
+        long before = usedHeap();
+        Flight[] flights = new Flight[flightCount];
+        Random random = new Random(42);
+        for (int i = 0; i < flightCount; i++) {
+            LocalDateTime departure = SCHEDULE_START.plusMinutes(5L * random.nextInt(105_120));
+            flights[i] = new Flight(numbers[i], "Airline", airports[random.nextInt(airports.length)],
+                                    airports[random.nextInt(airports.length)], departure, departure.plusHours(2));
+            for (SeatClass seatClass : SeatClass.values()) {
+                flights[i].setPrice(seatClass, 100_00L + random.nextInt(2000_00));
+                flights[i].setAvailableSeats(seatClass, 10 + random.nextInt(200));
+            }
+        }
+        long used = usedHeap() - before;
+
+        System.out.printf("%,d flights retain %.1f MB, %d bytes per flight (incl. departure/arrival times)%n",
+            flights.length, used / 1e6, used / flightCount);
+    }
+
+    private static void benchmarkReport(int bookingCount) {
+        Random random = new Random(42);
+        FlightRepository flights = new FlightRepository();
+        Flight[] schedule = new Flight[10_000];
+        for (int i = 0; i < schedule.length; i++) {
+            schedule[i] = randomFlight(i, 100, 365, random);
+            flights.add(schedule[i]);
+        }
+        Customer customer = new Customer("customer", "Customer123!", "Customer", "customer@example.com",
+                                         "5555555555", "Street");
+        List<Passenger> passengers = Arrays.asList(
+            new Passenger("Jane", "Customer", "P1", "USA", "1990-01-01"),
+            new Passenger("John", "Customer", "P2", "USA", "1990-01-01"));
+
+        System.out.println("Building " + bookingCount + " bookings...");
+        BookingStatus[] statuses = BookingStatus.values();
+        SeatClass[] seatClasses = SeatClass.values();
+        List<Booking> bookings = new ArrayList<>(bookingCount);
+        for (int i = 0; i < bookingCount; i++) {
+            Flight flight = schedule[random.nextInt(schedule.length)];
+            SeatClass seatClass = seatClasses[random.nextInt(seatClasses.length)];
+            bookings.add(new Booking("BK" + i, customer, flight, passengers.subList(0, 1 + random.nextInt(2)),
+                                     seatClass, statuses[random.nextInt(statuses.length)],
+                                     SCHEDULE_START.plusMinutes(random.nextInt(525_600)), 100_00L + random.nextInt(900_00)));
+        }
+
+        LocalDate from = SCHEDULE_START.toLocalDate().plusDays(30);
+        LocalDate to = SCHEDULE_START.toLocalDate().plusDays(300);
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            SystemReport report = SystemReport.generate(flights, bookings, from, to);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("System report over %,d bookings: %.0f ms (%,d bookings, $%s revenue, top route %s)%n",
+                bookingCount, elapsed / 1e6, report.getBookings(), Money.format(report.getRevenue()),
+                report.getRoutes().get(0).getRoute());
+        }
+    }
+
+    private static void benchmarkExport(int bookingCount) throws IOException {
+        Random random = new Random(42);
+        Flight[] schedule = new Flight[10_000];
+        for (int i = 0; i < schedule.length; i++) {
+            schedule[i] = randomFlight(i, 100, 365, random);
+        }
+        Customer customer = new Customer("customer", "Customer123!", "Customer", "customer@example.com",
+                                         "5555555555", "Street");
+        List<Passenger> passengers = Arrays.asList(new Passenger("Jane", "Customer", "P1", "USA", "1990-01-01"));
+
+        // Bookings are generated as they are exported, in booking-time order, so nothing is held in memory
+        Iterator<Booking> bookings = new Iterator<Booking>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < bookingCount;
+            }
+
+            @Override
+            public Booking next() {
+                Flight flight = schedule[random.nextInt(schedule.length)];
+                LocalDateTime bookingTime = SCHEDULE_START.plusSeconds(next * (365L * 24 * 3600 / bookingCount));
+                return new Booking("BK" + next++, customer, flight, passengers, SeatClass.ECONOMY,
+                                   BookingStatus.CONFIRMED, bookingTime, flight.getPrice(SeatClass.ECONOMY));
+            }
+        };
+
+        Path file = Files.createTempFile("benchmark", ".bkc");
+        try {
+            long start = System.nanoTime();
+            ColumnarExport.write(file, bookings);
+            long elapsed = System.nanoTime() - start;
+            Runtime runtime = Runtime.getRuntime();
+            System.out.printf("Exported %,d bookings in %.1f s: %.1f MB, %.1f bytes per booking, heap in use %.0f MB%n",
+                bookingCount, elapsed / 1e9, Files.size(file) / 1e6, Files.size(file) / (double) bookingCount,
+                (runtime.totalMemory() - runtime.freeMemory()) / 1e6);
+
+            for (int run = 0; run < 3; run++) {
+                long[] rows = new long[1];
+                start = System.nanoTime();
+                ColumnarExport.QueryStats stats = ColumnarExport.query(file, LocalDate.of(2024, 3, 1),
+                    LocalDate.of(2024, 3, 7), null, null, row -> rows[0]++);
+                System.out.printf("  one week: %,d rows in %.0f ms, %d blocks read, %d skipped%n", rows[0],
+                    (System.nanoTime() - start) / 1e6, stats.getBlocksRead(), stats.getBlocksSkipped());
+
+                start = System.nanoTime();
+                stats = ColumnarExport.query(file, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31),
+                    schedule[0].getOrigin(), schedule[0].getDestination(), row -> rows[0]++);
+                System.out.printf("  one route, full year: %,d rows in %.0f ms, %d blocks read, %d skipped%n",
+                    stats.getRows(), (System.nanoTime() - start) / 1e6, stats.getBlocksRead(), stats.getBlocksSkipped());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void benchmarkUsers(int userCount) throws IOException {
+        Path file = Files.createTempFile("benchmark-users", ".txt");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+                writer.write("username|password|name|email|contactInfo|address|role");
+                writer.newLine();
+                for (int i = 0; i < userCount; i++) {
+                    writer.write("user" + i + "|Passw0rd!" + i + "|User " + i + "|user" + i + "@example.com|555-"
+                        + i + "|" + i + " Main Street|CUSTOMER");
+                    writer.newLine();
+                }
+            }
+            System.out.printf("Loading %,d users, %.1f MB%n", userCount, Files.size(file) / 1e6);
+
+            for (int run = 0; run < 3; run++) {
+                // What each row cost before: the password and email regexes compiled and run per row
+                long start = System.nanoTime();
+                long checksum = 0;
+                for (ByteBuffer chunk : RecordScanner.map(file)) {
+                    RecordScanner record = new RecordScanner(chunk);
+                    record.next();
+                    while (record.next()) {
+                        String password = record.string(1);
+                        String email = record.string(3);
+                        if (java.util.regex.Pattern.compile("[A-Z]").matcher(password).find()
+                                && java.util.regex.Pattern.compile("[a-z]").matcher(password).find()
+                                && java.util.regex.Pattern.compile("\\d").matcher(password).find()
+                                && java.util.regex.Pattern.compile("[!@#$%^&*(),.?\":{}|<>]").matcher(password).find()
+                                && java.util.regex.Pattern.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$", email)) {
+                            checksum++;
+                        }
+                    }
+                }
+                report("regex validation per row ", userCount, start, checksum);
+
+                start = System.nanoTime();
+                checksum = 0;
+                for (ByteBuffer chunk : RecordScanner.map(file)) {
+                    RecordScanner record = new RecordScanner(chunk);
+                    record.next();
+                    while (record.next()) {
+                        if (UserValidator.isValidPassword(record.string(1)) && UserValidator.isValidEmail(record.string(3))) {
+                            checksum++;
+                        }
+                    }
+                }
+                report("single-pass validation   ", userCount, start, checksum);
+
+                System.gc();
+                start = System.nanoTime();
+                UserDirectory users = FileManager.loadUsers(file.toString(), false);
+                report("loadUsers, no revalidation", userCount, start, users.size());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Logins per second for each work factor, on as many threads as there are cores
+    private static void benchmarkLogin(int secondsPerSetting) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String password = "Passw0rd!";
+        System.out.println("Password verifications per second, " + threads + " thread(s), "
+            + secondsPerSetting + " s per setting (current setting: " + PasswordHasher.ITERATIONS + ")");
+        for (int iterations : new int[] {10_000, 50_000, 100_000, 210_000, 600_000}) {
+            String stored = PasswordHasher.hash(password, iterations);
+            PasswordHasher.verify(password, stored);
+            long count = runFor(threads, secondsPerSetting, () -> PasswordHasher.verify(password, stored));
+            double perSecond = count / (double) secondsPerSetting;
+            System.out.printf("  %,9d iterations: %,10.1f logins/sec, %6.1f ms each%n",
+                iterations, perSecond, threads * 1_000 / perSecond);
+        }
+
+        SessionRegistry sessions = new SessionRegistry();
+        String[] tokens = new String[100_000];
+        Customer customer = new Customer("bench", password, "Bench", "bench@example.com", "555", "Street");
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = sessions.open(customer).getToken();
+        }
+        AtomicLong next = new AtomicLong();
+        long count = runFor(threads, secondsPerSetting,
+            () -> sessions.find(tokens[(int) (next.getAndIncrement() % tokens.length)]) != null);
+        System.out.printf("  session token check: %,.0f/sec over %,d sessions%n",
+            count / (double) secondsPerSetting, tokens.length);
+    }
+
+    /**
+     * Opens the given number of sessions against a local BookingServer and has them search concurrently.
+     * Every session logs in over HTTP first, so run with a low -Dpassword.hashIterations to keep that phase
+     * short; the login benchmark measures hashing on its own.
+     */
+    private static void benchmarkServer(int sessionCount) throws Exception {
+        int airports = 100;
+        int days = 365;
+        Random random = new Random(42);
+        FlightRepository flights = new FlightRepository();
+        for (int i = 0; i < 100_000; i++) {
+            flights.add(randomFlight(i, airports, days, random));
+        }
+        UserDirectory users = new UserDirectory();
+        String password = "Passw0rd!";
+        String hash = PasswordHasher.hash(password);
+        for (int i = 0; i < sessionCount; i++) {
+            users.add(new Customer("user" + i, hash, "User " + i, "user" + i + "@example.com", "555", "Street", true));
+        }
+        BookingService service = new BookingService(users, flights, new ArrayList<>(), new SessionRegistry(),
+                                                    new SeatHolds(booking -> { }));
+        BookingServer server = new BookingServer(service, new java.net.InetSocketAddress(
+            java.net.InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        String base = "http://localhost:" + server.getPort();
+        java.net.http.HttpClient client = java.net.http.HttpClient.newBuilder()
+            .version(java.net.http.HttpClient.Version.HTTP_1_1)
+            .executor(java.util.concurrent.Executors.newFixedThreadPool(4, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            })).build();
+        try {
+            long start = System.nanoTime();
+            // Logins are spread over the client threads; one at a time, each waits out the client's round trip
+            int clients = 64;
+            String[] tokens = new String[sessionCount];
+            List<Thread> loginWorkers = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int first = c;
+                Thread worker = new Thread(() -> {
+                    for (int i = first; i < sessionCount; i += clients) {
+                        try {
+                            tokens[i] = client.send(java.net.http.HttpRequest.newBuilder(
+                                        java.net.URI.create(base + "/login"))
+                                    .header("Content-Type", "application/x-www-form-urlencoded")
+                                    .POST(java.net.http.HttpRequest.BodyPublishers.ofString(
+                                        "username=user" + i + "&password=" + password)).build(),
+                                java.net.http.HttpResponse.BodyHandlers.ofString()).body();
+                        } catch (Exception e) {
+                            throw new IllegalStateException("Login failed for user" + i, e);
+                        }
+                    }
+                });
+                worker.start();
+                loginWorkers.add(worker);
+            }
+            for (Thread worker : loginWorkers) {
+                worker.join();
+            }
+            System.out.printf("Opened %,d sessions in %.1f s (%d hash iterations)%n", sessionCount,
+                (System.nanoTime() - start) / 1e9, PasswordHasher.ITERATIONS);
+
+            int seconds = 10;
+            long[][] latencies = new long[clients][];
+            AtomicLong errors = new AtomicLong();
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            List<Thread> workers = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int clientIndex = c;
+                Thread worker = new Thread(() -> {
+                    Random clientRandom = new Random(clientIndex);
+                    long[] samples = new long[1 << 16];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        String token = tokens[clientRandom.nextInt(tokens.length)];
+                        String query = "/flights/search?origin=" + airport(clientRandom.nextInt(airports))
+                            + "&destination=" + airport(clientRandom.nextInt(airports))
+                            + "&date=" + SCHEDULE_START.toLocalDate().plusDays(clientRandom.nextInt(days));
+                        long requestStart = System.nanoTime();
+                        try {
+                            int status = client.send(java.net.http.HttpRequest.newBuilder(
+                                        java.net.URI.create(base + query)).header("Authorization", "Bearer " + token).build(),
+                                    java.net.http.HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if (status != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            if (errors.incrementAndGet() == 1) {
+                                System.err.println("First failed request: " + e);
+                            }
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - requestStart;
+                    }
+                    latencies[clientIndex] = Arrays.copyOf(samples, count);
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+            System.out.printf("%d clients searching across %,d sessions for %d s: %,.0f requests/sec, %d errors%n",
+                clients, sessionCount, seconds, all.length / (double) seconds, errors.get());
+            System.out.printf("  p50: %.2f ms, p99: %.2f ms, max: %.2f ms%n", all[all.length / 2] / 1e6,
+                all[(int) (all.length * 0.99)] / 1e6, all[all.length - 1] / 1e6);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Makes the same group bookings one call at a time and then as one batch, each time on fresh flights,
+     * journaling to a temp file.
+     */
+    private static void benchmarkBatch(int bookingCount) throws Exception {
+        Path journalFile = Files.createTempFile("benchmark", ".journal");
+        java.io.PrintStream out = System.out;
+        java.io.PrintStream quiet = new java.io.PrintStream(java.io.OutputStream.nullOutputStream());
+        try {
+            FileManager.openJournal(journalFile);
+            System.out.printf("%,d bookings for 1,000 customers on 200 flights%n", bookingCount);
+            for (int run = 0; run < 3; run++) {
+                BookingService service = newBatchService();
+                String token = service.getSessions().open(service.getUsers().findByUsername("agent")).getToken();
+                List<BatchBooking.Item> items = randomBatch(bookingCount, new Random(run));
+                System.setOut(quiet);
+                long start = System.nanoTime();
+                int booked = 0;
+                for (BatchBooking.Item item : items) {
+                    try {
+                        service.createBooking(token, item.getCustomerUsername(), item.getFlightNumber(),
+                                              item.getSeatClass(), item.getPassengers());
+                        booked++;
+                    } catch (IllegalStateException e) {
+                        // Sold out
+                    }
+                }
+                long singleElapsed = System.nanoTime() - start;
+                System.setOut(out);
+
+                service = newBatchService();
+                token = service.getSessions().open(service.getUsers().findByUsername("agent")).getToken();
+                System.setOut(quiet);
+                start = System.nanoTime();
+                List<BatchBooking.Result> results = service.createBookings(token, items);
+                long batchElapsed = System.nanoTime() - start;
+                System.setOut(out);
+
+                long batchBooked = results.stream().filter(BatchBooking.Result::isBooked).count();
+                System.out.printf("  single calls: %,d booked in %,d ms (%,.0f/sec); batch: %,d booked in %,d ms"
+                        + " (%,.0f/sec, committed)%n",
+                    booked, singleElapsed / 1_000_000, bookingCount / (singleElapsed / 1e9),
+                    batchBooked, batchElapsed / 1_000_000, bookingCount / (batchElapsed / 1e9));
+            }
+        } finally {
+            System.setOut(out);
+            FileManager.closeJournal();
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    // Imports a generated schedule into an empty repository, then the same file again to measure deduplication
+    private static void benchmarkImport(int flightCount) throws IOException {
+        Path file = Files.createTempFile("benchmark", ".txt");
+        Path journalFile = Files.createTempFile("benchmark", ".journal");
+        try {
+            writeFlightFile(file, flightCount);
+            FileManager.openJournal(journalFile);
+            System.out.printf("Importing %,d flights, %.1f MB, in batches of %,d%n", flightCount,
+                Files.size(file) / 1e6, FlightImporter.DEFAULT_BATCH_SIZE);
+            FlightRepository flights = new FlightRepository();
+            System.out.println("  new schedule: " + new FlightImporter(flights).importFile(file));
+            System.out.println("  same file again: " + new FlightImporter(flights, FlightImporter.DEFAULT_BATCH_SIZE,
+                                                                           null).importFile(file));
+            System.out.printf("  journal: %.1f MB%n", Files.size(journalFile) / 1e6);
+        } finally {
+            FileManager.closeJournal();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    /**
+     * Holds with deadlines spread over 15 minutes in a timing wheel, half of them cancelled and the rest expired
+     * by advancing a simulated clock a second at a time, against the same holds as tasks on a scheduled executor.
+     */
+    private static void benchmarkHolds(int holdCount) throws InterruptedException {
+        long ttlMillis = Duration.ofMinutes(15).toMillis();
+        System.out.printf("%,d holds over 15 minutes, half cancelled%n", holdCount);
+        for (int run = 0; run < 3; run++) {
+            Random random = new Random(run);
+            long[] deadlines = new long[holdCount];
+            for (int i = 0; i < holdCount; i++) {
+                deadlines[i] = 1 + random.nextInt((int) ttlMillis);
+            }
+
+            TimingWheel<Integer> wheel = new TimingWheel<>(0, 1_000);
+            List<TimingWheel.Timeout<Integer>> timeouts = new ArrayList<>(holdCount);
+            long start = System.nanoTime();
+            for (int i = 0; i < holdCount; i++) {
+                timeouts.add(wheel.schedule(i, deadlines[i]));
+            }
+            long scheduled = System.nanoTime();
+            for (int i = 0; i < holdCount; i += 2) {
+                wheel.cancel(timeouts.get(i));
+            }
+            long cancelled = System.nanoTime();
+            long expired = 0;
+            long late = 0;
+            for (long now = 1_000; now <= ttlMillis + 1_000; now += 1_000) {
+                for (int i : wheel.advance(now)) {
+                    expired++;
+                    late = Math.max(late, now - deadlines[i]);
+                }
+            }
+            long end = System.nanoTime();
+            timeouts = null;
+            System.out.printf("  wheel: schedule %,.0f/sec, cancel %,.0f/sec, %,d expired over 901 ticks in %,d ms"
+                    + " (%,.0f/sec), at most %,d ms late%n",
+                holdCount / ((scheduled - start) / 1e9), holdCount / 2 / ((cancelled - scheduled) / 1e9), expired,
+                (end - cancelled) / 1_000_000, expired / ((end - cancelled) / 1e9), late);
+
+            java.util.concurrent.ScheduledThreadPoolExecutor executor =
+                new java.util.concurrent.ScheduledThreadPoolExecutor(1);
+            executor.setRemoveOnCancelPolicy(true);
+            List<java.util.concurrent.ScheduledFuture<?>> futures = new ArrayList<>(holdCount);
+            start = System.nanoTime();
+            for (int i = 0; i < holdCount; i++) {
+                futures.add(executor.schedule(() -> { }, deadlines[i] + Duration.ofHours(1).toMillis(),
+                                              java.util.concurrent.TimeUnit.MILLISECONDS));
+            }
+            scheduled = System.nanoTime();
+            for (int i = 0; i < holdCount; i += 2) {
+                futures.get(i).cancel(false);
+            }
+            cancelled = System.nanoTime();
+            futures = null;
+            executor.shutdownNow();
+            executor.awaitTermination(1, java.util.concurrent.TimeUnit.MINUTES);
+            System.out.printf("  executor: schedule %,.0f/sec, cancel %,.0f/sec%n",
+                holdCount / ((scheduled - start) / 1e9), holdCount / 2 / ((cancelled - scheduled) / 1e9));
+        }
+    }
+
+    private static BookingService newBatchService() {
+        Random random = new Random(42);
+        FlightRepository flights = new FlightRepository();
+        for (int i = 0; i < 200; i++) {
+            Flight flight = randomFlight(i, 100, 365, random);
+            flight.setPrice(SeatClass.BUSINESS, 600_00L);
+            flight.setAvailableSeats(SeatClass.BUSINESS, 20);
+            flight.setPrice(SeatClass.FIRST_CLASS, 1_500_00L);
+            flight.setAvailableSeats(SeatClass.FIRST_CLASS, 10);
+            flights.add(flight);
+        }
+        UserDirectory users = new UserDirectory();
+        String hash = PasswordHasher.hash("Passw0rd!", 1);
+        users.add(new Agent("agent", hash, "Agent", "agent@example.com", "555", "Tours", true));
+        for (int i = 0; i < 1_000; i++) {
+            users.add(new Customer("user" + i, hash, "User " + i, "user" + i + "@example.com", "555", "Street", true));
+        }
+        return new BookingService(users, flights, new ArrayList<>(), new SessionRegistry(),
+                                  new SeatHolds(booking -> { }));
+    }
+
+    private static List<BatchBooking.Item> randomBatch(int bookingCount, Random random) {
+        List<BatchBooking.Item> items = new ArrayList<>(bookingCount);
+        for (int i = 0; i < bookingCount; i++) {
+            int classRoll = random.nextInt(20);
+            SeatClass seatClass = classRoll < 16 ? SeatClass.ECONOMY : classRoll < 19 ? SeatClass.BUSINESS
+                : SeatClass.FIRST_CLASS;
+            List<Passenger> passengers = new ArrayList<>();
+            for (int p = 1 + random.nextInt(4); p > 0; p--) {
+                passengers.add(new Passenger("First" + p, "Last" + i, "P" + i + "-" + p, "US", "1980-01-01"));
+            }
+            items.add(new BatchBooking.Item("user" + random.nextInt(1_000), "FL" + random.nextInt(200), seatClass,
+                                            passengers));
+        }
+        return items;
+    }
+
+    private static long runFor(int threads, int seconds, java.util.function.BooleanSupplier operation)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong total = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                long count = 0;
+                while (System.nanoTime() < deadline) {
+                    if (operation.getAsBoolean()) {
+                        count++;
+                    }
+                }
+                total.addAndGet(count);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return total.get();
+    }
+
+    private static void writeFlightFile(Path file, int records) throws IOException {
+        Random random = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("FlightNumber|Airline|Origin|Destination|DepartureTime|ArrivalTime|EconomyPrice|BusinessPrice|FirstClassPrice|EconomySeats|BusinessSeats|FirstClassSeats");
+            writer.newLine();
+            for (int i = 0; i < records; i++) {
+                Flight flight = randomFlight(i, 100, 365, random);
+                writer.write(flight.getFlightNumber() + "|" + flight.getAirline() + "|" + flight.getOrigin() + "|"
+                    + flight.getDestination() + "|" + flight.getDepartureTime().format(DATE_FORMAT) + "|"
+                    + flight.getArrivalTime().format(DATE_FORMAT) + "|" + Money.format(flight.getPrice(SeatClass.ECONOMY))
+                    + "|1200.00|2500.00|150|30|10");
+                writer.newLine();
+            }
+        }
+    }
+
+    private static void report(String parser, int records, long start, long checksum) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %s: %,.0f records/sec (checksum %d)%n", parser, records / seconds, checksum);
+    }
+
+    private static Flight randomFlight(int index, int airports, int days, Random random) {
+        int origin = random.nextInt(airports);
+        int destination = (origin + 1 + random.nextInt(airports - 1)) % airports;
+        LocalDateTime departure = SCHEDULE_START
+            .plusDays(random.nextInt(days))
+            .plusMinutes(5L * random.nextInt(288));
+        Flight flight = new Flight("FL" + index, "Airline" + (index % 20), airport(origin), airport(destination),
+                                   departure, departure.plusMinutes(60 + random.nextInt(600)));
+        flight.setPrice(SeatClass.ECONOMY, 100_00L * (1 + random.nextInt(4)) + random.nextInt(100));
+        flight.setAvailableSeats(SeatClass.ECONOMY, 150);
+        return flight;
+    }
+
+    private static String airport(int index) {
+        return "Airport" + index;
+    }
+}
@@ -0,0 +1,337 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Fixed-width binary snapshots of flights and bookings, an alternative to flights.txt and bookings.txt.
+ *
+ * A file is {@code [int magic][int stringCount][strings][int recordCount][records]}. Every string (flight
+ * numbers, airlines, airports, usernames, booking ids) is stored once in the string table as
+ * {@code [short length][UTF-8 bytes]} and records refer to it by index, so all flights from the same airport
+ * share one String instance once loaded. Prices are long cents, times are epoch minutes (UTC, as the text
+ * format carries no zone) and seat counts are unsigned shorts.
+ *
+ * Flight record (54 bytes): number, airline, origin, destination ids; departure, arrival; economy, business,
+ * first class price; economy, business, first class seats.
+ * Booking record (30 bytes): booking id, customer username, flight number ids; status, seat class ordinals;
+ * total price; booking time; agent username id, the empty string for direct bookings. Files written before
+ * the agent was recorded (magic "BKG1", 26 byte records without it) are still read.
+ *
+ * Readers check the string table, the record count, string indexes and ordinals against the file, so a
+ * truncated or corrupt file fails with an IOException naming it rather than an unchecked buffer error.
+ *
+ * Records are written from, and can be read back as, the pipe-delimited text lines used by the .txt files
+ * and the journal, which is what compaction and {@link StorageConverter} work with.
+ */
+public class BinarySnapshot {
+    private static final int FLIGHTS_MAGIC = 0x464C5431; // "FLT1"
+    private static final int BOOKINGS_MAGIC = 0x424B4732; // "BKG2"
+    private static final int LEGACY_BOOKINGS_MAGIC = 0x424B4731; // "BKG1"
+    private static final int FLIGHT_RECORD_SIZE = 54;
+    private static final int BOOKING_RECORD_SIZE = 30;
+    private static final int LEGACY_BOOKING_RECORD_SIZE = 26;
+    private static final SeatClass[] SEAT_CLASSES = SeatClass.values();
+    private static final BookingStatus[] BOOKING_STATUSES = BookingStatus.values();
+
+    public static void writeFlights(Path file, Collection<String> records) throws IOException {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(records.size() * FLIGHT_RECORD_SIZE);
+        DataOutputStream out = new DataOutputStream(body);
+        int count = 0;
+        for (String line : records) {
+            RecordScanner record = RecordScanner.of(line);
+            if (!record.next() || record.fieldCount() < 12) {
+                continue;
+            }
+            for (int field = 0; field < 4; field++) {
+                out.writeInt(strings.id(record.string(field)));
+            }
+            out.writeInt(toEpochMinutes(record.parseDateTime(4)));
+            out.writeInt(toEpochMinutes(record.parseDateTime(5)));
+            for (int field = 6; field < 9; field++) {
+                out.writeLong(record.parseCents(field));
+            }
+            for (int field = 9; field < 12; field++) {
+                out.writeShort(toSeatCount(record.parseInt(field)));
+            }
+            count++;
+        }
+        write(file, FLIGHTS_MAGIC, strings, count, body);
+    }
+
+    public static void writeBookings(Path file, Collection<String> records) throws IOException {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(records.size() * BOOKING_RECORD_SIZE);
+        DataOutputStream out = new DataOutputStream(body);
+        int count = 0;
+        for (String line : records) {
+            RecordScanner record = RecordScanner.of(line);
+            if (!record.next() || record.fieldCount() < 7) {
+                continue;
+            }
+            for (int field = 0; field < 3; field++) {
+                out.writeInt(strings.id(record.string(field)));
+            }
+            out.writeByte(record.parseEnum(3, BOOKING_STATUSES).ordinal());
+            out.writeByte(record.parseEnum(4, SEAT_CLASSES).ordinal());
+            out.writeLong(record.parseCents(5));
+            out.writeInt(toEpochMinutes(record.parseDateTime(6)));
+            out.writeInt(strings.id(record.fieldCount() > 7 ? record.string(7) : ""));
+            count++;
+        }
+        write(file, BOOKINGS_MAGIC, strings, count, body);
+    }
+
+    /**
+     * Decodes every flight straight into a {@link Flight}, in file order.
+     */
+    public static void readFlights(Path file, Consumer<Flight> merge) throws IOException {
+        ByteBuffer buffer = map(file, FLIGHTS_MAGIC);
+        String[] strings = readStrings(buffer, file);
+        int count = readCount(buffer, file, FLIGHT_RECORD_SIZE);
+        for (int i = 0; i < count; i++) {
+            Flight flight = new Flight(string(strings, buffer.getInt(), file), string(strings, buffer.getInt(), file),
+                                       string(strings, buffer.getInt(), file), string(strings, buffer.getInt(), file),
+                                       fromEpochMinutes(buffer.getInt()), fromEpochMinutes(buffer.getInt()));
+            try {
+                for (SeatClass seatClass : SEAT_CLASSES) {
+                    flight.setPrice(seatClass, buffer.getLong());
+                }
+            } catch (IllegalArgumentException e) {
+                throw corrupt(file, "flight " + flight.getFlightNumber() + ": " + e.getMessage());
+            }
+            for (SeatClass seatClass : SEAT_CLASSES) {
+                flight.setAvailableSeats(seatClass, Short.toUnsignedInt(buffer.getShort()));
+            }
+            merge.accept(flight);
+        }
+    }
+
+    /**
+     * Decodes bookings in file order, skipping any whose customer or flight is not loaded. An agent that is
+     * not loaded leaves the booking without one.
+     */
+    public static void readBookings(Path file, Map<String, Customer> customers, Map<String, Agent> agents,
+                                    FlightRepository flights, Map<String, List<Passenger>> passengers,
+                                    Consumer<Booking> merge) throws IOException {
+        ByteBuffer buffer = map(file, BOOKINGS_MAGIC, LEGACY_BOOKINGS_MAGIC);
+        boolean hasAgent = buffer.getInt(0) == BOOKINGS_MAGIC;
+        String[] strings = readStrings(buffer, file);
+        int count = readCount(buffer, file, hasAgent ? BOOKING_RECORD_SIZE : LEGACY_BOOKING_RECORD_SIZE);
+        for (int i = 0; i < count; i++) {
+            String bookingId = string(strings, buffer.getInt(), file);
+            Customer customer = customers.get(string(strings, buffer.getInt(), file));
+            Flight flight = flights.findByFlightNumber(string(strings, buffer.getInt(), file));
+            BookingStatus status = constant(BOOKING_STATUSES, buffer.get(), file);
+            SeatClass seatClass = constant(SEAT_CLASSES, buffer.get(), file);
+            long totalPrice = buffer.getLong();
+            LocalDateTime bookingTime = fromEpochMinutes(buffer.getInt());
+            Agent agent = hasAgent ? agents.get(string(strings, buffer.getInt(), file)) : null;
+            if (customer != null && flight != null) {
+                merge.accept(new Booking(bookingId, customer, flight,
+                                         passengers.getOrDefault(bookingId, Collections.emptyList()),
+                                         seatClass, status, bookingTime, totalPrice, agent));
+            }
+        }
+    }
+
+    public static List<String> readFlightRecords(Path file) throws IOException {
+        ByteBuffer buffer = map(file, FLIGHTS_MAGIC);
+        String[] strings = readStrings(buffer, file);
+        int count = readCount(buffer, file, FLIGHT_RECORD_SIZE);
+        List<String> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder line = new StringBuilder(128);
+            for (int field = 0; field < 4; field++) {
+                line.append(string(strings, buffer.getInt(), file)).append('|');
+            }
+            line.append(formatEpochMinutes(buffer.getInt())).append('|');
+            line.append(formatEpochMinutes(buffer.getInt()));
+            for (int field = 0; field < 3; field++) {
+                line.append('|').append(Money.format(buffer.getLong()));
+            }
+            for (int field = 0; field < 3; field++) {
+                line.append('|').append(Short.toUnsignedInt(buffer.getShort()));
+            }
+            records.add(line.toString());
+        }
+        return records;
+    }
+
+    public static List<String> readBookingRecords(Path file) throws IOException {
+        List<String> records = new ArrayList<>();
+        forEachBookingRecord(file, records::add);
+        return records;
+    }
+
+    /**
+     * Hands each booking to the consumer as a text record, in file order, without collecting them.
+     */
+    public static void forEachBookingRecord(Path file, Consumer<String> consumer) throws IOException {
+        ByteBuffer buffer = map(file, BOOKINGS_MAGIC, LEGACY_BOOKINGS_MAGIC);
+        boolean hasAgent = buffer.getInt(0) == BOOKINGS_MAGIC;
+        String[] strings = readStrings(buffer, file);
+        int count = readCount(buffer, file, hasAgent ? BOOKING_RECORD_SIZE : LEGACY_BOOKING_RECORD_SIZE);
+        for (int i = 0; i < count; i++) {
+            StringBuilder line = new StringBuilder(96);
+            for (int field = 0; field < 3; field++) {
+                line.append(string(strings, buffer.getInt(), file)).append('|');
+            }
+            line.append(constant(BOOKING_STATUSES, buffer.get(), file).name()).append('|');
+            line.append(constant(SEAT_CLASSES, buffer.get(), file).name()).append('|');
+            line.append(Money.format(buffer.getLong())).append('|');
+            line.append(formatEpochMinutes(buffer.getInt())).append('|');
+            line.append(hasAgent ? string(strings, buffer.getInt(), file) : "");
+            consumer.accept(line.toString());
+        }
+    }
+
+    // Written to a temp file and moved into place, so readers never see a partial snapshot
+    private static void write(Path file, int magic, StringTable strings, int count, ByteArrayOutputStream body)
+            throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(magic);
+            out.writeInt(strings.values.size());
+            for (String value : strings.values) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > 0xFFFF) {
+                    throw new IllegalArgumentException("String too long for binary snapshot: " + value.substring(0, 32));
+                }
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(count);
+            body.writeTo(out);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Positioned after the magic, which must be one of the given ones
+    private static ByteBuffer map(Path file, int... magics) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() >= 4) {
+                int magic = buffer.getInt();
+                for (int expected : magics) {
+                    if (magic == expected) {
+                        return buffer;
+                    }
+                }
+            }
+            throw new IOException("Not a binary snapshot of the expected kind: " + file);
+        }
+    }
+
+    // Every length is checked against what is left of the file, so a truncated table is reported, not underrun
+    private static String[] readStrings(ByteBuffer buffer, Path file) throws IOException {
+        if (buffer.remaining() < 4) {
+            throw corrupt(file, "the string table is missing");
+        }
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / 2) {
+            throw corrupt(file, "a string table of " + count + " strings does not fit in the file");
+        }
+        String[] strings = new String[count];
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            if (buffer.remaining() < 2) {
+                throw corrupt(file, "the string table ends after " + i + " of " + count + " strings");
+            }
+            int length = Short.toUnsignedInt(buffer.getShort());
+            if (length > buffer.remaining()) {
+                throw corrupt(file, "string " + i + " runs past the end of the file");
+            }
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+            buffer.get(bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    // Checked against what is left of the file, so a truncated file fails before any record is read
+    private static int readCount(ByteBuffer buffer, Path file, int recordSize) throws IOException {
+        if (buffer.remaining() < 4) {
+            throw corrupt(file, "the record count is missing");
+        }
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * recordSize > buffer.remaining()) {
+            throw corrupt(file, count + " records of " + recordSize + " bytes do not fit in the "
+                                + buffer.remaining() + " bytes left");
+        }
+        return count;
+    }
+
+    private static String string(String[] strings, int index, Path file) throws IOException {
+        if (index < 0 || index >= strings.length) {
+            throw corrupt(file, "string index " + index + " is outside the table of " + strings.length);
+        }
+        return strings[index];
+    }
+
+    private static <E extends Enum<E>> E constant(E[] values, byte ordinal, Path file) throws IOException {
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw corrupt(file, "no " + values[0].getDeclaringClass().getSimpleName() + " has ordinal " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private static IOException corrupt(Path file, String problem) {
+        return new IOException("Corrupt binary snapshot " + file + ": " + problem);
+    }
+
+    private static int toEpochMinutes(LocalDateTime time) {
+        return Math.toIntExact(time.toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+
+    private static LocalDateTime fromEpochMinutes(int minutes) {
+        return LocalDateTime.ofEpochSecond(minutes * 60L, 0, ZoneOffset.UTC);
+    }
+
+    private static String formatEpochMinutes(int minutes) {
+        LocalDateTime time = fromEpochMinutes(minutes);
+        return String.format("%04d-%02d-%02d %02d:%02d", time.getYear(), time.getMonthValue(),
+                             time.getDayOfMonth(), time.getHour(), time.getMinute());
+    }
+
+    private static int toSeatCount(int seats) {
+        if (seats < 0 || seats > 0xFFFF) {
+            throw new IllegalArgumentException("Seat count out of range for binary snapshot: " + seats);
+        }
+        return seats;
+    }
+
+    private static class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int id(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+    }
+}
@@ -12,8 +12,18 @@ public class Booking {
     private BookingStatus status;
     private LocalDateTime bookingTime;
     private List<String> specialRequests;
+    // Fare snapshot in cents, priced when the booking is made and repriced only when the seat class changes,
+    // so later changes to the flight's prices don't alter what was booked
+    private long totalPrice;
+    // The agent who made the booking, or null when the customer booked directly
+    private Agent agent;
 
     public Booking(Customer customer, Flight flight, List<Passenger> passengers, SeatClass seatClass) {
+        this(customer, flight, passengers, seatClass, null);
+    }
+
+    public Booking(Customer customer, Flight flight, List<Passenger> passengers, SeatClass seatClass, Agent agent) {
+        this.agent = agent;
         this.bookingId = UUID.randomUUID().toString();
         this.customer = customer;
         this.flight = flight;
@@ -22,6 +32,28 @@ public class Booking {
         this.status = BookingStatus.RESERVED;
         this.bookingTime = LocalDateTime.now();
         this.specialRequests = new ArrayList<>();
+        this.totalPrice = calculateTotalPrice();
+    }
+
+    public Booking(String bookingId, Customer customer, Flight flight, List<Passenger> passengers,
+                   SeatClass seatClass, BookingStatus status, LocalDateTime bookingTime, long totalPrice) {
+        this(bookingId, customer, flight, passengers, seatClass, status, bookingTime, totalPrice, null);
+    }
+
+    // A saved booking, with the agent who made it or null
+    public Booking(String bookingId, Customer customer, Flight flight, List<Passenger> passengers,
+                   SeatClass seatClass, BookingStatus status, LocalDateTime bookingTime, long totalPrice,
+                   Agent agent) {
+        this.agent = agent;
+        this.bookingId = bookingId;
+        this.customer = customer;
+        this.flight = flight;
+        this.passengers = new ArrayList<>(passengers);
+        this.seatClass = seatClass;
+        this.status = status;
+        this.bookingTime = bookingTime;
+        this.specialRequests = new ArrayList<>();
+        this.totalPrice = totalPrice;
     }
 
     public String getBookingId() {
@@ -40,15 +72,19 @@ public class Booking {
         return new ArrayList<>(passengers);
     }
 
+    public int getPassengerCount() {
+        return passengers.size();
+    }
+
     public SeatClass getSeatClass() {
         return seatClass;
     }
 
-    public BookingStatus getStatus() {
+    public synchronized BookingStatus getStatus() {
         return status;
     }
 
-    public void setStatus(BookingStatus status) {
+    public synchronized void setStatus(BookingStatus status) {
         this.status = status;
     }
 
@@ -64,11 +100,12 @@ public class Booking {
         specialRequests.add(request);
     }
 
-    public double calculateTotalPrice() {
-        return flight.calculatePrice(seatClass) * passengers.size();
+    // Prices the booking at the flight's current fares; getTotalPrice() returns the booked fare
+    public long calculateTotalPrice() {
+        return Money.times(flight.calculatePrice(seatClass), passengers.size());
     }
 
-    public boolean confirmBooking() {
+    public synchronized boolean confirmBooking() {
         if (status == BookingStatus.RESERVED) {
             status = BookingStatus.CONFIRMED;
             return true;
@@ -76,27 +113,91 @@ public class Booking {
         return false;
     }
 
-    public boolean cancelBooking() {
+    /**
+     * Cancels the booking if it is still only reserved, as when its seat hold runs out; a booking confirmed or
+     * cancelled in the meantime is left as it is.
+     */
+    public synchronized boolean expireReservation() {
+        return status == BookingStatus.RESERVED && cancelBooking();
+    }
+
+    public Agent getAgent() {
+        return agent;
+    }
+
+    /**
+     * Posts a new or freshly loaded booking to the revenue ledgers; call once per booking.
+     */
+    public synchronized void recordInLedgers() {
+        boolean cancelled = status == BookingStatus.CANCELLED;
+        for (RevenueLedger ledger : ledgers()) {
+            ledger.record(bookingTime.toLocalDate(), cancelled ? 0 : totalPrice, cancelled ? 0 : 1, cancelled ? 1 : 0);
+        }
+    }
+
+    public synchronized boolean cancelBooking() {
         if (status != BookingStatus.CANCELLED) {
+            // Released first, so a release the flight refuses leaves the booking as it was
+            flight.release(seatClass, passengers.size());
             status = BookingStatus.CANCELLED;
-            flight.releaseSeat(seatClass);
+            for (RevenueLedger ledger : ledgers()) {
+                ledger.record(bookingTime.toLocalDate(), -totalPrice, -1, 1);
+            }
             return true;
         }
         return false;
     }
 
-    public void setSeatClass(SeatClass seatClass) {
+    /**
+     * Moves the booking's seats to another class and reprices it at that class's current fare, as one step
+     * against a concurrent cancellation or hold expiry. Returns false, changing nothing, if the booking is
+     * cancelled; throws IllegalStateException if the new class has too few seats left.
+     */
+    public synchronized boolean changeSeatClass(SeatClass newSeatClass) {
+        if (newSeatClass == null) {
+            throw new IllegalArgumentException("Seat class cannot be null");
+        }
+        if (status == BookingStatus.CANCELLED) {
+            return false;
+        }
+        if (newSeatClass == seatClass) {
+            return true;
+        }
+        // The new class is taken first, so a class that is full leaves the booking untouched
+        int seats = passengers.size();
+        if (seats > 0) {
+            if (!flight.tryReserve(newSeatClass, seats)) {
+                throw new IllegalStateException("Not enough seats available in " + newSeatClass + " class");
+            }
+            flight.release(seatClass, seats);
+        }
+        setSeatClass(newSeatClass);
+        return true;
+    }
+
+    public synchronized void setSeatClass(SeatClass seatClass) {
         if (seatClass == null) {
             throw new IllegalArgumentException("Seat class cannot be null");
         }
         this.seatClass = seatClass;
+        long previousPrice = totalPrice;
+        this.totalPrice = calculateTotalPrice();
+        if (status != BookingStatus.CANCELLED) {
+            for (RevenueLedger ledger : ledgers()) {
+                ledger.record(bookingTime.toLocalDate(), totalPrice - previousPrice, 0, 0);
+            }
+        }
+    }
+
+    private List<RevenueLedger> ledgers() {
+        return agent == null ? List.of(flight.getLedger()) : List.of(flight.getLedger(), agent.getLedger());
     }
 
     public LocalDateTime getCreationTime() {
         return bookingTime;
     }
 
-    public double getTotalPrice() {
-        return calculateTotalPrice();
+    public long getTotalPrice() {
+        return totalPrice;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,385 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves {@link BookingService} over HTTP on the JDK's built-in server, so one process can serve many
+ * concurrent sessions against the same flight inventory.
+ *
+ * Parameters come from the query string or a form-encoded body. {@code POST /login} returns a session
+ * token that later requests send as {@code Authorization: Bearer <token>} (or a {@code token} parameter).
+ * Responses are plain text, one pipe-delimited record per line as in the data files. Errors use 400 for
+ * invalid input, 403 for a missing or insufficient session, 404 for unknown paths and 409 for a request
+ * that conflicts with the current state, such as a sold-out class.
+ *
+ * Each request runs on its own thread: a virtual thread when the JVM has them (Java 21 and later), otherwise
+ * a thread from a cached pool.
+ *
+ * Run from the data directory: {@code java -cp src BookingServer [port]}. It listens on localhost,
+ * port {@code server.port} (default 8080).
+ */
+public class BookingServer {
+    private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final String TEXT = "text/plain; charset=utf-8";
+
+    private final BookingService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Route> routes = new HashMap<>();
+
+    @FunctionalInterface
+    private interface Route {
+        String handle(Request request);
+    }
+
+    public BookingServer(BookingService service, InetSocketAddress address) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(address, 0);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        registerRoutes();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("server.port", 8080);
+        BookingService service = BookingService.load();
+        FileManager.startCompactor();
+        BookingServer server = new BookingServer(service, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.start();
+        System.out.println("Booking service listening on http://localhost:" + server.getPort() + "/");
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * A thread per request: virtual threads where available, otherwise a cached pool that keeps idle
+     * threads for reuse.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "booking-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void registerRoutes() {
+        routes.put("POST /login", request -> service.login(request.get("username"), request.get("password")));
+        routes.put("POST /logout", request -> {
+            service.logout(request.token());
+            return "Logged out";
+        });
+        routes.put("POST /register", request -> service.register(request.get("username"), request.get("password"),
+            request.get("name"), request.get("email"), request.get("contactInfo"), request.get("address")).getUsername());
+        routes.put("POST /profile", request -> service.updateProfile(request.token(), request.find("name"),
+            request.find("email"), request.find("contactInfo"), request.find("address"),
+            request.find("password")).getUsername());
+
+        routes.put("GET /flights", request -> formatFlights(service.listFlights(request.token())));
+        routes.put("GET /flights/search", request -> {
+            String origin = request.get("origin");
+            String destination = request.get("destination");
+            String date = request.get("date");
+            StringBuilder body = new StringBuilder(formatFlights(
+                service.searchFlights(request.token(), origin, destination, date)));
+            for (Itinerary itinerary : service.searchConnections(request.token(), origin, destination, date)) {
+                body.append("connection");
+                for (Flight leg : itinerary.getLegs()) {
+                    body.append('|').append(leg.getFlightNumber());
+                }
+                body.append('|').append(Money.format(itinerary.getPrice(SeatClass.ECONOMY))).append('\n');
+            }
+            return body.toString();
+        });
+        routes.put("POST /flights", request -> {
+            long[] prices = new long[SeatClass.values().length];
+            int[] seats = new int[SeatClass.values().length];
+            prices[SeatClass.ECONOMY.ordinal()] = Money.parse(request.get("economyPrice"));
+            prices[SeatClass.BUSINESS.ordinal()] = Money.parse(request.get("businessPrice"));
+            prices[SeatClass.FIRST_CLASS.ordinal()] = Money.parse(request.get("firstClassPrice"));
+            seats[SeatClass.ECONOMY.ordinal()] = request.getInt("economySeats");
+            seats[SeatClass.BUSINESS.ordinal()] = request.getInt("businessSeats");
+            seats[SeatClass.FIRST_CLASS.ordinal()] = request.getInt("firstClassSeats");
+            return formatFlight(service.createFlight(request.token(), request.get("flightNumber"),
+                request.get("airline"), request.get("origin"), request.get("destination"),
+                request.getDateTime("departureTime"), request.getDateTime("arrivalTime"), prices, seats));
+        });
+
+        routes.put("GET /bookings", request -> formatBookings(service.getBookings(request.token())));
+        routes.put("POST /bookings", request -> {
+            List<Passenger> passengers = new ArrayList<>();
+            for (String passenger : request.getAll("passenger")) {
+                passengers.add(parsePassenger(passenger));
+            }
+            String seatClass = request.find("seatClass");
+            return formatBooking(service.createBooking(request.token(), request.find("customer"),
+                request.get("flightNumber"), seatClass == null ? SeatClass.ECONOMY : SeatClass.valueOf(seatClass),
+                passengers));
+        });
+        routes.put("POST /bookings/batch", request -> {
+            // One item parameter per booking: customer|flightNumber|seatClass|passenger;passenger...
+            List<BatchBooking.Item> items = new ArrayList<>();
+            for (String item : request.getAll("item")) {
+                items.add(parseItem(items.size(), item));
+            }
+            StringBuilder body = new StringBuilder();
+            for (BatchBooking.Result result : service.createBookings(request.token(), items)) {
+                body.append(result.getIndex()).append('|');
+                if (result.isBooked()) {
+                    body.append("BOOKED|").append(formatBooking(result.getBooking()));
+                } else {
+                    body.append("FAILED|").append(result.getError());
+                }
+                body.append('\n');
+            }
+            return body.toString();
+        });
+        routes.put("POST /bookings/confirm",
+            request -> formatBooking(service.confirmBooking(request.token(), request.get("bookingId"))));
+        routes.put("POST /bookings/cancel",
+            request -> formatBooking(service.cancelBooking(request.token(), request.get("bookingId"))));
+        routes.put("POST /bookings/modify", request -> formatBooking(service.modifyBooking(request.token(),
+            request.get("bookingId"), SeatClass.valueOf(request.get("seatClass")))));
+
+        routes.put("GET /reports/agent", request -> {
+            LocalDate from = request.getDate("from");
+            LocalDate to = request.getDate("to");
+            RevenueLedger.Summary summary = service.summarizeAgentBookings(request.token(), from, to);
+            return "bookings|" + summary.getBookings() + "\ncancellations|" + summary.getCancellations()
+                + "\nrevenue|" + Money.format(summary.getRevenue()) + "\ncommission|"
+                + Money.format(Money.percentOf(summary.getRevenue(), Agent.COMMISSION_PERCENT)) + "\n"
+                + formatBookings(service.getAgentBookingReport(request.token(), from, to));
+        });
+        routes.put("GET /reports/system", request -> {
+            SystemReport report = service.generateSystemReport(request.token(), request.getDate("from"),
+                                                               request.getDate("to"));
+            StringBuilder body = new StringBuilder();
+            body.append("bookings|").append(report.getBookings()).append('\n');
+            body.append("cancellations|").append(report.getCancellations()).append('\n');
+            body.append("revenue|").append(Money.format(report.getRevenue())).append('\n');
+            for (SeatClass seatClass : SeatClass.values()) {
+                body.append("class|").append(seatClass).append('|').append(Money.format(report.getRevenue(seatClass)))
+                    .append('|').append(report.getSeatsSold(seatClass))
+                    .append('|').append(String.format("%.3f", report.getLoadFactor(seatClass))).append('\n');
+            }
+            for (SystemReport.RouteRevenue route : report.getRoutes()) {
+                body.append("route|").append(route.getRoute()).append('|').append(Money.format(route.getRevenue()))
+                    .append('|').append(route.getBookings()).append('\n');
+            }
+            return body.toString();
+        });
+
+        routes.put("GET /users", request -> {
+            StringBuilder body = new StringBuilder();
+            for (User user : service.listUsers(request.token())) {
+                body.append(user.getUsername()).append('|').append(user.getName()).append('|')
+                    .append(user.getEmail()).append('|').append(user.getRole()).append('\n');
+            }
+            return body.toString();
+        });
+        routes.put("POST /users", request -> service.createUser(request.token(), request.get("username"),
+            request.get("password"), request.get("name"), request.get("email"), request.get("contactInfo"),
+            UserRole.valueOf(request.get("role"))).getUsername());
+        routes.put("POST /users/access", request -> {
+            service.manageUserAccess(request.token(), request.get("username"),
+                                     Boolean.parseBoolean(request.get("grant")));
+            return "OK";
+        });
+        routes.put("POST /settings", request -> {
+            service.modifySystemSettings(request.token(), request.get("setting"), request.get("value"));
+            return "OK";
+        });
+        routes.put("GET /logs", request -> String.join("\n", service.getSystemLogs(request.token())) + "\n");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status;
+        String body;
+        try {
+            String path = exchange.getRequestURI().getPath();
+            Route route = routes.get(exchange.getRequestMethod() + " " + path);
+            if (route == null) {
+                status = 404;
+                body = "No such operation: " + exchange.getRequestMethod() + " " + path;
+            } else {
+                body = route.handle(new Request(exchange));
+                status = 200;
+            }
+        } catch (IllegalArgumentException | DateTimeException e) {
+            status = 400;
+            body = e.getMessage();
+        } catch (SecurityException e) {
+            status = 403;
+            body = e.getMessage();
+        } catch (IllegalStateException e) {
+            status = 409;
+            body = e.getMessage();
+        } catch (RuntimeException e) {
+            status = 500;
+            body = "Internal error";
+            System.err.println("Error handling " + exchange.getRequestURI() + ": " + e);
+        }
+
+        byte[] bytes = (body == null ? "" : body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", TEXT);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Passenger parsePassenger(String value) {
+        // firstName,lastName,passportNumber,nationality,dateOfBirth
+        String[] fields = value.split(",", -1);
+        if (fields.length != 5) {
+            throw new IllegalArgumentException(
+                "Passenger must be firstName,lastName,passportNumber,nationality,dateOfBirth");
+        }
+        return new Passenger(fields[0], fields[1], fields[2], fields[3], fields[4]);
+    }
+
+    private static BatchBooking.Item parseItem(int index, String value) {
+        String[] fields = value.split("\\|", -1);
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("Item " + index + " must be customer|flightNumber|seatClass|passengers");
+        }
+        List<Passenger> passengers = new ArrayList<>();
+        for (String passenger : fields[3].split(";")) {
+            if (!passenger.isEmpty()) {
+                passengers.add(parsePassenger(passenger));
+            }
+        }
+        try {
+            return new BatchBooking.Item(fields[0], fields[1], SeatClass.valueOf(fields[2]), passengers);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Item " + index + " has an unknown seat class: " + fields[2]);
+        }
+    }
+
+    private static String formatFlights(List<Flight> flights) {
+        StringBuilder body = new StringBuilder();
+        for (Flight flight : flights) {
+            body.append(formatFlight(flight)).append('\n');
+        }
+        return body.toString();
+    }
+
+    private static String formatFlight(Flight flight) {
+        return String.join("|", flight.getFlightNumber(), flight.getAirline(), flight.getOrigin(),
+            flight.getDestination(), flight.getDepartureTime().format(dateFormatter),
+            flight.getArrivalTime().format(dateFormatter), Money.format(flight.getPrice(SeatClass.ECONOMY)),
+            Money.format(flight.getPrice(SeatClass.BUSINESS)), Money.format(flight.getPrice(SeatClass.FIRST_CLASS)),
+            String.valueOf(flight.getAvailableSeats(SeatClass.ECONOMY)),
+            String.valueOf(flight.getAvailableSeats(SeatClass.BUSINESS)),
+            String.valueOf(flight.getAvailableSeats(SeatClass.FIRST_CLASS)));
+    }
+
+    private static String formatBookings(List<Booking> bookings) {
+        StringBuilder body = new StringBuilder();
+        for (Booking booking : bookings) {
+            body.append(formatBooking(booking)).append('\n');
+        }
+        return body.toString();
+    }
+
+    private static String formatBooking(Booking booking) {
+        return String.join("|", booking.getBookingId(), booking.getCustomer().getUsername(),
+            booking.getFlight().getFlightNumber(), booking.getStatus().name(), booking.getSeatClass().name(),
+            Money.format(booking.getTotalPrice()), booking.getBookingTime().format(dateFormatter));
+    }
+
+    // The parameters of one request, from the query string and a form-encoded body
+    private static class Request {
+        private final Map<String, List<String>> parameters = new HashMap<>();
+        private final String authorization;
+
+        Request(HttpExchange exchange) throws IOException {
+            parse(exchange.getRequestURI().getRawQuery());
+            try (InputStream in = exchange.getRequestBody()) {
+                parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            this.authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        }
+
+        private void parse(String encoded) {
+            if (encoded == null || encoded.isEmpty()) {
+                return;
+            }
+            for (String pair : encoded.split("&")) {
+                int equals = pair.indexOf('=');
+                String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+                String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+                parameters.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+            }
+        }
+
+        String token() {
+            if (authorization != null && authorization.startsWith("Bearer ")) {
+                return authorization.substring("Bearer ".length()).trim();
+            }
+            return find("token");
+        }
+
+        String find(String name) {
+            List<String> values = parameters.get(name);
+            return values == null ? null : values.get(0);
+        }
+
+        String get(String name) {
+            String value = find(name);
+            if (value == null) {
+                throw new IllegalArgumentException("Missing parameter: " + name);
+            }
+            return value;
+        }
+
+        List<String> getAll(String name) {
+            List<String> values = parameters.get(name);
+            return values == null ? new ArrayList<>() : values;
+        }
+
+        int getInt(String name) {
+            return Integer.parseInt(get(name));
+        }
+
+        LocalDate getDate(String name) {
+            return LocalDate.parse(get(name));
+        }
+
+        LocalDateTime getDateTime(String name) {
+            return LocalDateTime.parse(get(name), dateFormatter);
+        }
+    }
+}
@@ -0,0 +1,456 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The customer, agent and administrator operations, independent of any user interface.
+ *
+ * One instance holds the shared users, flight inventory and bookings and serves any number of sessions at
+ * once: every operation after {@link #login} names its session by token, so no caller-side state decides who
+ * is acting. Changes are saved through {@link FileManager} as they are made. Operations throw
+ * IllegalArgumentException for bad input, including text that cannot be stored in a data file field (see
+ * {@link FileManager#requireStorable}), IllegalStateException when the request conflicts with the current
+ * state (no seats left, already cancelled) and SecurityException when the session is missing, expired or
+ * not allowed to do it.
+ *
+ * New bookings are RESERVED and their seats are held by {@link SeatHolds}: a booking not confirmed within
+ * the hold lifetime is cancelled and saved. Loaded bookings still RESERVED are held for what is left of
+ * their lifetime; ones whose hold ran out while the application was stopped are cancelled on the first tick.
+ */
+public class BookingService {
+    private final UserDirectory users;
+    private final FlightRepository flights;
+    private final Map<String, Booking> bookings = new ConcurrentHashMap<>();
+    private final SessionRegistry sessions;
+    private final SeatHolds holds;
+
+    public BookingService(UserDirectory users, FlightRepository flights, Collection<Booking> bookings,
+                          SessionRegistry sessions, SeatHolds holds) {
+        if (users == null || flights == null || bookings == null || sessions == null || holds == null) {
+            throw new IllegalArgumentException("Users, flights, bookings, sessions and holds must be provided");
+        }
+        this.users = users;
+        this.flights = flights;
+        this.sessions = sessions;
+        this.holds = holds;
+        for (Booking booking : bookings) {
+            this.bookings.put(booking.getBookingId(), booking);
+            holds.hold(booking);
+        }
+    }
+
+    /**
+     * Opens the data files in the working directory and loads everything in them.
+     */
+    public static BookingService load() {
+        FileManager.initializeFiles();
+        FileManager.LoadedData data = FileManager.loadAll();
+        FileManager.reportLoadThroughput();
+        SessionRegistry sessions = new SessionRegistry();
+        sessions.startSweeper();
+        SeatHolds holds = new SeatHolds(FileManager::saveBooking);
+        holds.start();
+        return new BookingService(data.getUsers(), data.getFlights(), data.getBookings(), sessions, holds);
+    }
+
+    public UserDirectory getUsers() {
+        return users;
+    }
+
+    public FlightRepository getFlights() {
+        return flights;
+    }
+
+    // Sessions
+
+    /**
+     * Checks the password and opens a session, returning its token.
+     */
+    public String login(String username, String password) {
+        if (username == null || password == null) {
+            throw new IllegalArgumentException("Username and password cannot be null");
+        }
+        User user = users.findByUsername(username);
+        if (user == null) {
+            throw new IllegalArgumentException("Username not found");
+        }
+        String storedHash = user.getPasswordHash();
+        // The account may be signed in elsewhere already; each login gets a session of its own
+        if (!user.login(username, password)) {
+            throw new IllegalArgumentException("Invalid password");
+        }
+        if (!storedHash.equals(user.getPasswordHash())) {
+            // Upgraded to the current hash on login
+            FileManager.saveUser(user);
+        }
+        return sessions.open(user).getToken();
+    }
+
+    public void logout(String token) {
+        Session session = sessions.find(token);
+        if (session != null) {
+            session.getUser().logout(session);
+            sessions.close(token);
+        }
+    }
+
+    /**
+     * The open session with the token.
+     */
+    public Session getSession(String token) {
+        Session session = sessions.find(token);
+        if (session == null) {
+            throw new SecurityException("Not logged in or session expired");
+        }
+        return session;
+    }
+
+    /**
+     * The user a session belongs to.
+     */
+    public User getUser(String token) {
+        return getSession(token).getUser();
+    }
+
+    public SessionRegistry getSessions() {
+        return sessions;
+    }
+
+    public SeatHolds getHolds() {
+        return holds;
+    }
+
+    public Customer register(String username, String password, String name, String email, String contactInfo,
+                             String address) {
+        FileManager.requireStorable(username, name, email, contactInfo, address);
+        Customer customer = new Customer(username, password, name, email, contactInfo, address);
+        if (!users.add(customer)) {
+            throw new IllegalArgumentException("Username or email is already registered");
+        }
+        FileManager.saveUser(customer);
+        return customer;
+    }
+
+    // Any signed-in user
+
+    public List<Flight> listFlights(String token) {
+        getUser(token);
+        return flights.getAll();
+    }
+
+    /**
+     * Changes the given profile fields of the session's user; null leaves a field as it is.
+     */
+    public User updateProfile(String token, String name, String email, String contactInfo, String address,
+                              String password) {
+        Session session = getSession(token);
+        User user = session.getUser();
+        FileManager.requireStorable(name, email, contactInfo, address);
+        synchronized (user) {
+            if (name != null) {
+                if (name.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Name cannot be null or empty");
+                }
+                user.setName(name);
+            }
+            if (email != null) {
+                users.changeEmail(user, email);
+            }
+            if (contactInfo != null) {
+                user.setContactInfo(contactInfo);
+            }
+            if (address != null) {
+                if (user instanceof Customer) {
+                    ((Customer) user).setAddress(address);
+                } else if (user instanceof Agent) {
+                    ((Agent) user).setDepartment(address);
+                }
+            }
+            if (password != null) {
+                user.setPassword(password);
+            }
+            user.updateProfile(session);
+        }
+        FileManager.saveUser(user);
+        return user;
+    }
+
+    // Customers
+
+    public List<Flight> searchFlights(String token, String origin, String destination, String date) {
+        Session session = getSession(token);
+        return requireCustomer(session).searchFlights(session, flights, origin, destination, date);
+    }
+
+    public List<Itinerary> searchConnections(String token, String origin, String destination, String date) {
+        Session session = getSession(token);
+        return requireCustomer(session).searchConnections(session, new ConnectionSearch(flights), origin,
+                                                          destination, date);
+    }
+
+    /**
+     * A customer's own bookings, or the bookings an agent has made.
+     */
+    public List<Booking> getBookings(String token) {
+        User user = getUser(token);
+        if (user instanceof Customer) {
+            return ((Customer) user).getBookingHistory();
+        }
+        if (user instanceof Agent) {
+            return ((Agent) user).getManagedBookings();
+        }
+        throw new SecurityException("Only customers and agents have bookings");
+    }
+
+    public Booking cancelBooking(String token, String bookingId) {
+        Session session = getSession(token);
+        requireCustomer(session).cancelBooking(session, bookingId);
+        Booking booking = bookings.get(bookingId);
+        holds.release(booking);
+        FileManager.saveBooking(booking);
+        return booking;
+    }
+
+    /**
+     * Confirms a reserved booking, a customer's own or one an agent made, and drops its seat hold. A booking
+     * whose hold has already run out is cancelled and can no longer be confirmed.
+     */
+    public Booking confirmBooking(String token, String bookingId) {
+        Session session = getSession(token);
+        User user = session.getUser();
+        Booking booking;
+        if (user instanceof Customer) {
+            booking = ((Customer) user).confirmBooking(session, bookingId);
+        } else if (user instanceof Agent) {
+            booking = bookings.get(bookingId);
+            if (booking == null || booking.getAgent() != user) {
+                throw new IllegalArgumentException("Booking not found");
+            }
+            if (!booking.confirmBooking()) {
+                throw new IllegalStateException("Only a reserved booking can be confirmed; this one is "
+                    + booking.getStatus());
+            }
+        } else {
+            throw new SecurityException("Only customers and agents can confirm bookings");
+        }
+        holds.release(booking);
+        FileManager.saveBooking(booking);
+        return booking;
+    }
+
+    /**
+     * Books a flight. A customer books for themselves, in economy; an agent books any class for the named
+     * customer.
+     */
+    public Booking createBooking(String token, String customerUsername, String flightNumber, SeatClass seatClass,
+                                 List<Passenger> passengers) {
+        Session session = getSession(token);
+        User user = session.getUser();
+        requireStorable(passengers);
+        Flight flight = flights.findByFlightNumber(flightNumber);
+        if (flight == null) {
+            throw new IllegalArgumentException("Flight not found");
+        }
+        Booking booking;
+        if (user instanceof Agent) {
+            Customer customer = users.findCustomer(customerUsername);
+            if (customer == null) {
+                throw new IllegalArgumentException("Customer not found");
+            }
+            booking = ((Agent) user).createBookingForCustomer(session, customer, flight, passengers, seatClass);
+        } else if (user instanceof Customer) {
+            if (seatClass != null && seatClass != SeatClass.ECONOMY) {
+                throw new IllegalArgumentException("Customers can only book economy; an agent can book other classes");
+            }
+            booking = ((Customer) user).createBooking(session, flight, passengers);
+        } else {
+            throw new SecurityException("Only customers and agents can create bookings");
+        }
+        bookings.put(booking.getBookingId(), booking);
+        holds.hold(booking);
+        FileManager.saveBooking(booking);
+        for (Passenger passenger : booking.getPassengers()) {
+            FileManager.savePassenger(passenger, booking.getBookingId());
+        }
+        return booking;
+    }
+
+    // Agents
+
+    /**
+     * Books many items at once for an agent and saves every booking made in one journal write. Items that
+     * cannot be booked are reported in their result and do not affect the others.
+     */
+    public List<BatchBooking.Result> createBookings(String token, List<BatchBooking.Item> items) {
+        Session session = getSession(token);
+        Agent agent = requireAgent(session);
+        if (items != null) {
+            for (BatchBooking.Item item : items) {
+                if (item != null) {
+                    requireStorable(item.getPassengers());
+                }
+            }
+        }
+        List<BatchBooking.Result> results = agent.createBookings(session, items, users, flights);
+        List<Booking> booked = new ArrayList<>();
+        for (BatchBooking.Result result : results) {
+            if (result.isBooked()) {
+                booked.add(result.getBooking());
+                bookings.put(result.getBooking().getBookingId(), result.getBooking());
+                holds.hold(result.getBooking());
+            }
+        }
+        FileManager.saveBookings(booked);
+        return results;
+    }
+
+    /**
+     * Creates a flight with its fares (cents) and seat counts, indexed by seat class ordinal.
+     */
+    public Flight createFlight(String token, String flightNumber, String airline, String origin, String destination,
+                               LocalDateTime departureTime, LocalDateTime arrivalTime, long[] prices, int[] seats) {
+        Session session = getSession(token);
+        Agent agent = requireAgent(session);
+        FileManager.requireStorable(flightNumber, airline, origin, destination);
+        if (prices == null || seats == null || prices.length != SeatClass.values().length
+                || seats.length != SeatClass.values().length) {
+            throw new IllegalArgumentException("A price and seat count must be given for every seat class");
+        }
+        if (flights.contains(flightNumber)) {
+            throw new IllegalArgumentException("Flight number already exists");
+        }
+        Flight flight = agent.createFlight(session, flightNumber, airline, origin, destination, departureTime,
+                                          arrivalTime);
+        for (SeatClass seatClass : SeatClass.values()) {
+            flight.setPrice(seatClass, prices[seatClass.ordinal()]);
+            flight.setAvailableSeats(seatClass, seats[seatClass.ordinal()]);
+        }
+        if (!flights.add(flight)) {
+            throw new IllegalArgumentException("Flight number already exists");
+        }
+        FileManager.saveFlight(flight);
+        return flight;
+    }
+
+    /**
+     * Imports a schedule file into the flight inventory, saving each batch of new flights as it goes.
+     */
+    public FlightImporter.Summary importFlights(String token, Path file) throws IOException {
+        Session session = getSession(token);
+        return requireAgent(session).importFlights(session, flights, file);
+    }
+
+    public Booking modifyBooking(String token, String bookingId, SeatClass seatClass) {
+        Session session = getSession(token);
+        Agent agent = requireAgent(session);
+        Booking booking = bookings.get(bookingId);
+        if (booking == null) {
+            throw new IllegalArgumentException("Booking not found");
+        }
+        agent.modifyBooking(session, booking, seatClass);
+        FileManager.saveBooking(booking);
+        return booking;
+    }
+
+    public RevenueLedger.Summary summarizeAgentBookings(String token, LocalDate startDate, LocalDate endDate) {
+        Session session = getSession(token);
+        return requireAgent(session).summarizeBookings(session, startDate, endDate);
+    }
+
+    public List<Booking> getAgentBookingReport(String token, LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null) {
+            throw new IllegalArgumentException("Start and end dates must be provided");
+        }
+        Session session = getSession(token);
+        return requireAgent(session).generateBookingReport(session, startDate.atStartOfDay(),
+                                                           endDate.atTime(23, 59, 59, 999_999_999));
+    }
+
+    // Administrators
+
+    public User createUser(String token, String username, String password, String name, String email,
+                           String contactInfo, UserRole role) {
+        Session session = getSession(token);
+        FileManager.requireStorable(username, name, email, contactInfo);
+        User user = requireAdministrator(session).createUser(session, username, password, name, email, contactInfo,
+                                                             role);
+        if (!users.add(user)) {
+            throw new IllegalArgumentException("Username or email is already registered");
+        }
+        FileManager.saveUser(user);
+        return user;
+    }
+
+    public List<User> listUsers(String token) {
+        requireAdministrator(getSession(token));
+        return users.getAll();
+    }
+
+    public void manageUserAccess(String token, String username, boolean grantAccess) {
+        Session session = getSession(token);
+        Administrator administrator = requireAdministrator(session);
+        User user = users.findByUsername(username);
+        if (user == null) {
+            throw new IllegalArgumentException("User not found");
+        }
+        administrator.manageUserAccess(session, user, grantAccess);
+    }
+
+    public void modifySystemSettings(String token, String setting, String value) {
+        Session session = getSession(token);
+        requireAdministrator(session).modifySystemSettings(session, setting, value);
+    }
+
+    public List<String> getSystemLogs(String token) {
+        return requireAdministrator(getSession(token)).getSystemLogs();
+    }
+
+    public SystemReport generateSystemReport(String token, LocalDate startDate, LocalDate endDate) {
+        Session session = getSession(token);
+        return requireAdministrator(session).generateSystemReport(session, flights,
+            Collections.unmodifiableCollection(bookings.values()), startDate, endDate);
+    }
+
+    private static void requireStorable(List<Passenger> passengers) {
+        if (passengers != null) {
+            for (Passenger passenger : passengers) {
+                if (passenger != null) {
+                    FileManager.requireStorable(passenger.getFirstName(), passenger.getLastName(),
+                                                passenger.getPassportNumber(), passenger.getNationality(),
+                                                passenger.getDateOfBirth());
+                }
+            }
+        }
+    }
+
+    private Customer requireCustomer(Session session) {
+        User user = session.getUser();
+        if (!(user instanceof Customer)) {
+            throw new SecurityException("Only customers can do this");
+        }
+        return (Customer) user;
+    }
+
+    private Agent requireAgent(Session session) {
+        User user = session.getUser();
+        if (!(user instanceof Agent)) {
+            throw new SecurityException("Only agents can do this");
+        }
+        return (Agent) user;
+    }
+
+    private Administrator requireAdministrator(Session session) {
+        User user = session.getUser();
+        if (!(user instanceof Administrator)) {
+            throw new SecurityException("Only administrators can do this");
+        }
+        return (Administrator) user;
+    }
+}
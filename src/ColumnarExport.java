@@ -0,0 +1,831 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Columnar, compressed export of bookings joined with their flight and passengers, for offline analysis.
+ *
+ * Rows are written in blocks of {@link #BLOCK_ROWS}. A block header holds the min/max of every numeric column
+ * and the dictionaries of the low-cardinality string columns (route, status, seat class), followed by a
+ * directory of column lengths and then each column deflated on its own: dictionary ids for string columns
+ * (high-cardinality ones carry their own block dictionary) and offsets from the block minimum for numeric
+ * ones, all as varints. A query decides from the header alone whether a block can hold rows for its date
+ * range or route and skips the block otherwise, and only decompresses the columns it needs. The writer
+ * buffers a single block, so memory use does not grow with the number of bookings exported.
+ *
+ * {@link #export(Path, FlightRepository)} keeps memory flat when reading the data files too. It reads the
+ * booking and passenger records once each (see {@link FileManager#forEachBookingRecord}) and joins them with
+ * an external sort-merge on booking id, so rows keep the bookings' order, which tends to follow booking time.
+ * Only the flights, the join side, and the journal's booking records are held whole; the sort runs go to
+ * temporary files.
+ *
+ * Run from the data directory: {@code java -cp src ColumnarExport export <file>} or
+ * {@code java -cp src ColumnarExport query <file> <from> <to> [<origin> <destination>]}.
+ */
+public class ColumnarExport {
+    public static final int BLOCK_ROWS = 64 * 1024;
+
+    private static final int SORT_RUN_LINES = 64 * 1024;
+    private static final int MERGE_WIDTH = 64;
+    private static final int SEQUENCE_DIGITS = 19;
+
+    private static final SeatClass[] SEAT_CLASSES = SeatClass.values();
+    private static final BookingStatus[] BOOKING_STATUSES = BookingStatus.values();
+
+    private static final int MAGIC = 0x424B4332; // "BKC2"
+    private static final String[] STRING_COLUMNS = {
+        "bookingId", "customer", "flightNumber", "origin", "destination", "status", "seatClass",
+        "passengerNames", "nationalities"
+    };
+    private static final String[] NUMERIC_COLUMNS = {
+        "passengers", "totalPrice", "bookingTime", "departureTime"
+    };
+    private static final int ORIGIN = 3;
+    private static final int DESTINATION = 4;
+    private static final int STATUS = 5;
+    private static final int SEAT_CLASS = 6;
+    private static final int PASSENGER_NAMES = 7;
+    private static final int NATIONALITIES = 8;
+    private static final int PASSENGERS = 0;
+    private static final int BOOKING_TIME = 2;
+    // Low-cardinality columns whose dictionaries go in the block header, where they are used to skip blocks;
+    // the others keep their dictionary inside the compressed column
+    private static final int[] HEADER_DICTIONARIES = {ORIGIN, DESTINATION, STATUS, SEAT_CLASS};
+
+    /**
+     * One exported booking. Times are epoch minutes (UTC, as elsewhere in the data files) and the price is
+     * in cents. Passenger names ("first last") and nationalities are in the booking's passenger order; they
+     * are stored '|'-separated, as no stored field can contain '|'.
+     */
+    public static class Row {
+        private final String[] strings = new String[STRING_COLUMNS.length];
+        private final long[] numbers = new long[NUMERIC_COLUMNS.length];
+
+        public String getBookingId() {
+            return strings[0];
+        }
+
+        public String getCustomer() {
+            return strings[1];
+        }
+
+        public String getFlightNumber() {
+            return strings[2];
+        }
+
+        public String getOrigin() {
+            return strings[3];
+        }
+
+        public String getDestination() {
+            return strings[4];
+        }
+
+        public BookingStatus getStatus() {
+            return BookingStatus.valueOf(strings[5]);
+        }
+
+        public SeatClass getSeatClass() {
+            return SeatClass.valueOf(strings[6]);
+        }
+
+        public List<String> getPassengerNames() {
+            return splitList(strings[PASSENGER_NAMES]);
+        }
+
+        public List<String> getNationalities() {
+            return splitList(strings[NATIONALITIES]);
+        }
+
+        public int getPassengers() {
+            return (int) numbers[PASSENGERS];
+        }
+
+        public long getTotalPrice() {
+            return numbers[1];
+        }
+
+        public LocalDateTime getBookingTime() {
+            return fromEpochMinutes(numbers[2]);
+        }
+
+        public LocalDateTime getDepartureTime() {
+            return fromEpochMinutes(numbers[3]);
+        }
+    }
+
+    public static class QueryStats {
+        private long rows;
+        private int blocksRead;
+        private int blocksSkipped;
+
+        public long getRows() {
+            return rows;
+        }
+
+        public int getBlocksRead() {
+            return blocksRead;
+        }
+
+        public int getBlocksSkipped() {
+            return blocksSkipped;
+        }
+    }
+
+    /**
+     * Writes the bookings in iteration order and returns how many were written.
+     */
+    public static long write(Path file, Iterator<Booking> bookings) throws IOException {
+        long rows = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            BlockWriter block = new BlockWriter();
+            while (bookings.hasNext()) {
+                block.add(bookings.next());
+                rows++;
+                if (block.size == BLOCK_ROWS) {
+                    block.writeTo(out);
+                }
+            }
+            block.writeTo(out);
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the current bookings in the data files of the working directory, joined with the given flights
+     * and their passengers, and returns how many were written. Bookings whose flight is not loaded and records
+     * that do not parse are reported and left out. Temporary files go next to the export file and are
+     * deleted afterwards.
+     */
+    public static long export(Path file, FlightRepository flights) throws IOException {
+        Path directory = Files.createTempDirectory(file.toAbsolutePath().getParent(), "export");
+        try {
+            // The bookings are copied as they are streamed, so the last pass reads the same records in the same
+            // order; each is numbered by its position, which becomes its row order
+            Path bookings = directory.resolve("bookings");
+            ExternalSort idsByBooking = new ExternalSort(directory);
+            ExternalSort passengersByBooking = new ExternalSort(directory);
+            ExternalSort passengersByPosition = new ExternalSort(directory);
+            try (BufferedWriter copy = Files.newBufferedWriter(bookings, StandardCharsets.UTF_8)) {
+                long[] position = {0};
+                FileManager.forEachBookingRecord(line -> {
+                    try {
+                        copy.write(line);
+                        copy.newLine();
+                        idsByBooking.add(bookingKey(line) + sequence(position[0]++));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                long[] order = {0};
+                FileManager.forEachPassengerRecord(record -> {
+                    if (record.fieldCount() >= 6) {
+                        try {
+                            passengersByBooking.add(String.join("|", record.string(0), sequence(order[0]++),
+                                record.string(3), record.string(1) + " " + record.string(2), record.string(4)));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            joinPassengers(idsByBooking, passengersByBooking, passengersByPosition);
+            return writeBookings(file, bookings, passengersByPosition, flights);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Merges the booking ids, with their positions, and the passenger records, both sorted by booking id, into
+     * one line per booking with passengers: {@code position|count|name|nationality|...}. A passenger saved
+     * more than once is listed where it was first saved, with its last record, as when bookings are loaded.
+     */
+    private static void joinPassengers(ExternalSort idsByBooking, ExternalSort passengersByBooking,
+                                       ExternalSort passengersByPosition) throws IOException {
+        try (ExternalSort.Lines ids = idsByBooking.sorted();
+             ExternalSort.Lines passengers = passengersByBooking.sorted()) {
+            String passenger = passengers.next();
+            String groupKey = null;
+            Map<String, String> group = new LinkedHashMap<>();
+            String id;
+            while ((id = ids.next()) != null) {
+                String key = bookingKey(id);
+                if (!key.equals(groupKey)) {
+                    groupKey = key;
+                    group.clear();
+                    while (passenger != null && bookingKey(passenger).compareTo(key) < 0) {
+                        passenger = passengers.next();
+                    }
+                    while (passenger != null && passenger.startsWith(key)) {
+                        // bookingId|order|passport|name|nationality
+                        String[] fields = passenger.split("\\|", -1);
+                        group.put(fields[2], fields[3] + "|" + fields[4]);
+                        passenger = passengers.next();
+                    }
+                }
+                if (!group.isEmpty()) {
+                    StringJoiner line = new StringJoiner("|");
+                    line.add(id.substring(key.length())).add(String.valueOf(group.size()));
+                    group.values().forEach(line::add);
+                    passengersByPosition.add(line.toString());
+                }
+            }
+        }
+    }
+
+    // Reads the copied bookings in order alongside their passengers, sorted by the same positions
+    private static long writeBookings(Path file, Path bookings, ExternalSort passengersByPosition,
+                                      FlightRepository flights) throws IOException {
+        long rows = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+             BufferedReader in = Files.newBufferedReader(bookings, StandardCharsets.UTF_8);
+             ExternalSort.Lines passengers = passengersByPosition.sorted()) {
+            out.writeInt(MAGIC);
+            BlockWriter block = new BlockWriter();
+            String passenger = passengers.next();
+            long position = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String prefix = sequence(position++) + "|";
+                String[] bookingPassengers = null;
+                if (passenger != null && passenger.startsWith(prefix)) {
+                    bookingPassengers = passenger.substring(prefix.length()).split("\\|", -1);
+                    passenger = passengers.next();
+                }
+                if (addRecord(line, bookingPassengers, flights, block)) {
+                    rows++;
+                }
+                if (block.size == BLOCK_ROWS) {
+                    block.writeTo(out);
+                }
+            }
+            block.writeTo(out);
+        }
+        return rows;
+    }
+
+    // passengers is {count, name, nationality, name, nationality, ...}, or null for a booking without any
+    private static boolean addRecord(String line, String[] passengers, FlightRepository flights,
+                                     BlockWriter block) {
+        RecordScanner record = RecordScanner.of(line);
+        if (!record.next() || record.fieldCount() < 7) {
+            System.err.println("Skipping invalid booking record: " + line);
+            return false;
+        }
+        String bookingId = record.string(0);
+        Flight flight = flights.findByFlightNumber(record.string(2));
+        if (flight == null) {
+            System.err.println("Skipping booking " + bookingId + ": flight " + record.string(2) + " is not loaded");
+            return false;
+        }
+        StringJoiner names = new StringJoiner("|");
+        StringJoiner nationalities = new StringJoiner("|");
+        int count = passengers == null ? 0 : Integer.parseInt(passengers[0]);
+        for (int i = 0; i < count; i++) {
+            names.add(passengers[1 + 2 * i]);
+            nationalities.add(passengers[2 + 2 * i]);
+        }
+        try {
+            block.add(new String[] {
+                bookingId, record.string(1), flight.getFlightNumber(), flight.getOrigin(), flight.getDestination(),
+                record.parseEnum(3, BOOKING_STATUSES).name(), record.parseEnum(4, SEAT_CLASSES).name(),
+                names.toString(), nationalities.toString()
+            }, new long[] {
+                count, record.parseCents(5), toEpochMinutes(record.parseDateTime(6)),
+                toEpochMinutes(flight.getDepartureTime())
+            });
+            return true;
+        } catch (IllegalArgumentException | DateTimeException e) {
+            System.err.println("Skipping invalid booking record " + bookingId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // The booking id of a record or sort line with its '|', so ids that share a prefix never match
+    private static String bookingKey(String line) {
+        int end = line.indexOf('|');
+        return end < 0 ? line + "|" : line.substring(0, end + 1);
+    }
+
+    // Zero-padded, so positions sort as text in numeric order
+    private static String sequence(long position) {
+        String digits = Long.toString(position);
+        return "0".repeat(Math.max(0, SEQUENCE_DIGITS - digits.length())) + digits;
+    }
+
+    /**
+     * Sorts lines, in String order, in bounded memory: lines are sorted in runs of {@link #SORT_RUN_LINES},
+     * each run is written to a temporary file, and the runs are merged when read. Lines must not contain line
+     * breaks. Because every line starts with a key ended by '|', and '|' never occurs in a stored field, lines
+     * with the same key end up next to each other and keys come out in {@code bookingKey} order.
+     */
+    private static class ExternalSort {
+        private final Path directory;
+        private final List<String> buffer = new ArrayList<>();
+        private final List<Path> runs = new ArrayList<>();
+
+        ExternalSort(Path directory) {
+            this.directory = directory;
+        }
+
+        void add(String line) throws IOException {
+            buffer.add(line);
+            if (buffer.size() == SORT_RUN_LINES) {
+                writeRun();
+            }
+        }
+
+        private void writeRun() throws IOException {
+            Collections.sort(buffer);
+            Path run = Files.createTempFile(directory, "run", null);
+            Files.write(run, buffer, StandardCharsets.UTF_8);
+            runs.add(run);
+            buffer.clear();
+        }
+
+        /**
+         * Every line added, in order. Runs are merged at most {@link #MERGE_WIDTH} at a time, so the number
+         * of files open at once stays bounded however many runs there are.
+         */
+        Lines sorted() throws IOException {
+            if (!buffer.isEmpty()) {
+                writeRun();
+            }
+            while (runs.size() > MERGE_WIDTH) {
+                List<Path> merged = new ArrayList<>(runs.subList(0, MERGE_WIDTH));
+                runs.subList(0, MERGE_WIDTH).clear();
+                Path run = Files.createTempFile(directory, "run", null);
+                try (Lines lines = new Lines(merged);
+                     BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = lines.next()) != null) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+                for (Path path : merged) {
+                    Files.delete(path);
+                }
+                runs.add(run);
+            }
+            return new Lines(runs);
+        }
+
+        // A k-way merge over sorted run files
+        static class Lines implements Closeable {
+            private final List<BufferedReader> readers = new ArrayList<>();
+            private final PriorityQueue<Map.Entry<String, BufferedReader>> heads =
+                new PriorityQueue<>(Map.Entry.comparingByKey());
+
+            Lines(List<Path> runs) throws IOException {
+                try {
+                    for (Path run : runs) {
+                        BufferedReader reader = Files.newBufferedReader(run, StandardCharsets.UTF_8);
+                        readers.add(reader);
+                        advance(reader);
+                    }
+                } catch (IOException e) {
+                    close();
+                    throw e;
+                }
+            }
+
+            // The next line, or null after the last
+            String next() throws IOException {
+                Map.Entry<String, BufferedReader> head = heads.poll();
+                if (head == null) {
+                    return null;
+                }
+                advance(head.getValue());
+                return head.getKey();
+            }
+
+            private void advance(BufferedReader reader) throws IOException {
+                String line = reader.readLine();
+                if (line != null) {
+                    heads.add(Map.entry(line, reader));
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                for (BufferedReader reader : readers) {
+                    reader.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams the rows whose booking date falls between the two dates (inclusive) and, when origin and
+     * destination are given, whose flight is on that route. Blocks whose header rules out a match are skipped
+     * without reading their data; in the others, only the filter columns are decompressed until a row matches.
+     */
+    public static QueryStats query(Path file, LocalDate from, LocalDate to, String origin, String destination,
+                                   Consumer<Row> consumer) throws IOException {
+        long minTime = from.atStartOfDay().toEpochSecond(ZoneOffset.UTC) / 60;
+        long maxTime = to.plusDays(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC) / 60 - 1;
+        int columns = STRING_COLUMNS.length + NUMERIC_COLUMNS.length;
+        QueryStats stats = new QueryStats();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a columnar booking export: " + file);
+            }
+            while (true) {
+                int rowCount;
+                try {
+                    rowCount = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                long[] min = new long[NUMERIC_COLUMNS.length];
+                long[] max = new long[NUMERIC_COLUMNS.length];
+                for (int column = 0; column < NUMERIC_COLUMNS.length; column++) {
+                    min[column] = in.readLong();
+                    max[column] = in.readLong();
+                }
+                String[][] dictionaries = new String[STRING_COLUMNS.length][];
+                for (int column : HEADER_DICTIONARIES) {
+                    dictionaries[column] = new String[in.readInt()];
+                    for (int i = 0; i < dictionaries[column].length; i++) {
+                        dictionaries[column][i] = in.readUTF();
+                    }
+                }
+                int[] compressedLengths = new int[columns];
+                int[] rawLengths = new int[columns];
+                long dataLength = 0;
+                for (int column = 0; column < columns; column++) {
+                    compressedLengths[column] = in.readInt();
+                    rawLengths[column] = in.readInt();
+                    dataLength += compressedLengths[column];
+                }
+
+                int originId = origin == null ? -1 : indexOf(dictionaries[ORIGIN], origin);
+                int destinationId = destination == null ? -1 : indexOf(dictionaries[DESTINATION], destination);
+                if (max[BOOKING_TIME] < minTime || min[BOOKING_TIME] > maxTime
+                        || (origin != null && originId < 0) || (destination != null && destinationId < 0)) {
+                    in.skipNBytes(dataLength);
+                    stats.blocksSkipped++;
+                    continue;
+                }
+                stats.blocksRead++;
+
+                byte[][] chunks = new byte[columns][];
+                for (int column = 0; column < columns; column++) {
+                    chunks[column] = in.readNBytes(compressedLengths[column]);
+                }
+                Block block = new Block(rowCount, min, dictionaries, chunks, rawLengths);
+
+                long[] bookingTimes = block.numbers(BOOKING_TIME);
+                int[] origins = origin == null ? null : block.ids(ORIGIN);
+                int[] destinations = destination == null ? null : block.ids(DESTINATION);
+                for (int row = 0; row < rowCount; row++) {
+                    if (bookingTimes[row] < minTime || bookingTimes[row] > maxTime
+                            || (origins != null && origins[row] != originId)
+                            || (destinations != null && destinations[row] != destinationId)) {
+                        continue;
+                    }
+                    Row result = new Row();
+                    for (int column = 0; column < STRING_COLUMNS.length; column++) {
+                        result.strings[column] = block.dictionary(column)[block.ids(column)[row]];
+                    }
+                    for (int column = 0; column < NUMERIC_COLUMNS.length; column++) {
+                        result.numbers[column] = block.numbers(column)[row];
+                    }
+                    stats.rows++;
+                    consumer.accept(result);
+                }
+            }
+        }
+        return stats;
+    }
+
+    // The columns of one block that passed the header checks, decompressed on first use
+    private static class Block {
+        private final int rowCount;
+        private final long[] min;
+        private final String[][] dictionaries;
+        private final byte[][] chunks;
+        private final int[] rawLengths;
+        private final int[][] ids = new int[STRING_COLUMNS.length][];
+        private final long[][] numbers = new long[NUMERIC_COLUMNS.length][];
+
+        Block(int rowCount, long[] min, String[][] dictionaries, byte[][] chunks, int[] rawLengths) {
+            this.rowCount = rowCount;
+            this.min = min;
+            this.dictionaries = dictionaries;
+            this.chunks = chunks;
+            this.rawLengths = rawLengths;
+        }
+
+        String[] dictionary(int column) throws IOException {
+            ids(column);
+            return dictionaries[column];
+        }
+
+        int[] ids(int column) throws IOException {
+            if (ids[column] == null) {
+                byte[] raw = inflate(chunks[column], rawLengths[column]);
+                int[] position = {0};
+                if (dictionaries[column] == null) {
+                    String[] dictionary = new String[(int) readVarLong(raw, position)];
+                    for (int i = 0; i < dictionary.length; i++) {
+                        int length = (int) readVarLong(raw, position);
+                        dictionary[i] = new String(raw, position[0], length, StandardCharsets.UTF_8);
+                        position[0] += length;
+                    }
+                    dictionaries[column] = dictionary;
+                }
+                int[] values = new int[rowCount];
+                for (int row = 0; row < rowCount; row++) {
+                    values[row] = (int) readVarLong(raw, position);
+                }
+                ids[column] = values;
+            }
+            return ids[column];
+        }
+
+        long[] numbers(int column) throws IOException {
+            if (numbers[column] == null) {
+                byte[] raw = inflate(chunks[STRING_COLUMNS.length + column], rawLengths[STRING_COLUMNS.length + column]);
+                int[] position = {0};
+                long[] values = new long[rowCount];
+                for (int row = 0; row < rowCount; row++) {
+                    values[row] = min[column] + readVarLong(raw, position);
+                }
+                numbers[column] = values;
+            }
+            return numbers[column];
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("export")) {
+            FileManager.initializeFiles();
+            long rows = export(Paths.get(args[1]), FileManager.loadFlights());
+            System.out.printf("Exported %,d bookings to %s (%,d bytes)%n", rows, args[1], Files.size(Paths.get(args[1])));
+            FileManager.closeJournal();
+        } else if (args.length == 4 || args.length == 6) {
+            long[] revenue = new long[1];
+            QueryStats stats = query(Paths.get(args[1]), LocalDate.parse(args[2]), LocalDate.parse(args[3]),
+                args.length == 6 ? args[4] : null, args.length == 6 ? args[5] : null,
+                row -> {
+                    if (row.getStatus() != BookingStatus.CANCELLED) {
+                        revenue[0] += row.getTotalPrice();
+                    }
+                });
+            System.out.printf("%,d bookings, revenue $%s (blocks read: %d, skipped: %d)%n",
+                stats.getRows(), Money.format(revenue[0]), stats.getBlocksRead(), stats.getBlocksSkipped());
+        } else {
+            System.err.println("Usage: java ColumnarExport export <file>");
+            System.err.println("       java ColumnarExport query <file> <from> <to> [<origin> <destination>]");
+        }
+    }
+
+    // Buffers one block of rows column by column; reset after every write
+    private static class BlockWriter {
+        private final int[][] ids = new int[STRING_COLUMNS.length][BLOCK_ROWS];
+        private final long[][] values = new long[NUMERIC_COLUMNS.length][BLOCK_ROWS];
+        private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final byte[] buffer = new byte[1 << 16];
+        private int size;
+
+        BlockWriter() {
+            for (int column = 0; column < STRING_COLUMNS.length; column++) {
+                dictionaries.add(new HashMap<>());
+            }
+        }
+
+        void add(Booking booking) {
+            Flight flight = booking.getFlight();
+            StringJoiner names = new StringJoiner("|");
+            StringJoiner nationalities = new StringJoiner("|");
+            for (Passenger passenger : booking.getPassengers()) {
+                names.add(passenger.getFirstName() + " " + passenger.getLastName());
+                nationalities.add(passenger.getNationality());
+            }
+            add(new String[] {
+                booking.getBookingId(), booking.getCustomer().getUsername(), flight.getFlightNumber(),
+                flight.getOrigin(), flight.getDestination(), booking.getStatus().name(), booking.getSeatClass().name(),
+                names.toString(), nationalities.toString()
+            }, new long[] {
+                booking.getPassengerCount(), booking.getTotalPrice(), toEpochMinutes(booking.getBookingTime()),
+                toEpochMinutes(flight.getDepartureTime())
+            });
+        }
+
+        void add(String[] strings, long[] numbers) {
+            if (size == BLOCK_ROWS) {
+                throw new IllegalStateException("Block is full");
+            }
+            for (int column = 0; column < strings.length; column++) {
+                Map<String, Integer> dictionary = dictionaries.get(column);
+                Integer id = dictionary.get(strings[column]);
+                if (id == null) {
+                    id = dictionary.size();
+                    dictionary.put(strings[column], id);
+                }
+                ids[column][size] = id;
+            }
+            for (int column = 0; column < numbers.length; column++) {
+                values[column][size] = numbers[column];
+            }
+            size++;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            if (size == 0) {
+                return;
+            }
+            out.writeInt(size);
+            long[] min = new long[NUMERIC_COLUMNS.length];
+            for (int column = 0; column < NUMERIC_COLUMNS.length; column++) {
+                long columnMin = Long.MAX_VALUE;
+                long columnMax = Long.MIN_VALUE;
+                for (int row = 0; row < size; row++) {
+                    columnMin = Math.min(columnMin, values[column][row]);
+                    columnMax = Math.max(columnMax, values[column][row]);
+                }
+                min[column] = columnMin;
+                out.writeLong(columnMin);
+                out.writeLong(columnMax);
+            }
+            for (int column : HEADER_DICTIONARIES) {
+                String[] entries = entries(column);
+                out.writeInt(entries.length);
+                for (String entry : entries) {
+                    out.writeUTF(entry);
+                }
+            }
+
+            List<byte[]> chunks = new ArrayList<>();
+            for (int column = 0; column < STRING_COLUMNS.length; column++) {
+                ByteArrayOutputStream raw = new ByteArrayOutputStream(size * 2);
+                if (!isHeaderDictionary(column)) {
+                    String[] entries = entries(column);
+                    writeVarLong(raw, entries.length);
+                    for (String entry : entries) {
+                        byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+                        writeVarLong(raw, bytes.length);
+                        raw.write(bytes, 0, bytes.length);
+                    }
+                }
+                for (int row = 0; row < size; row++) {
+                    writeVarLong(raw, ids[column][row]);
+                }
+                chunks.add(raw.toByteArray());
+            }
+            for (int column = 0; column < NUMERIC_COLUMNS.length; column++) {
+                ByteArrayOutputStream raw = new ByteArrayOutputStream(size * 3);
+                for (int row = 0; row < size; row++) {
+                    writeVarLong(raw, values[column][row] - min[column]);
+                }
+                chunks.add(raw.toByteArray());
+            }
+
+            List<byte[]> compressed = new ArrayList<>();
+            for (byte[] chunk : chunks) {
+                compressed.add(deflate(chunk));
+            }
+            for (int column = 0; column < chunks.size(); column++) {
+                out.writeInt(compressed.get(column).length);
+                out.writeInt(chunks.get(column).length);
+            }
+            for (byte[] chunk : compressed) {
+                out.write(chunk);
+            }
+
+            size = 0;
+            for (Map<String, Integer> dictionary : dictionaries) {
+                dictionary.clear();
+            }
+        }
+
+        private String[] entries(int column) {
+            String[] entries = new String[dictionaries.get(column).size()];
+            for (Map.Entry<String, Integer> entry : dictionaries.get(column).entrySet()) {
+                entries[entry.getValue()] = entry.getKey();
+            }
+            return entries;
+        }
+
+        private byte[] deflate(byte[] input) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(input.length / 2 + 64);
+            deflater.reset();
+            deflater.setInput(input);
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return compressed.toByteArray();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) throws IOException {
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                length += inflater.inflate(raw, length, rawLength - length);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt column in booking export", e);
+        } finally {
+            inflater.end();
+        }
+        return raw;
+    }
+
+    private static boolean isHeaderDictionary(int column) {
+        for (int headerColumn : HEADER_DICTIONARIES) {
+            if (headerColumn == column) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> splitList(String values) {
+        return values.isEmpty() ? Collections.emptyList() : Arrays.asList(values.split("\\|"));
+    }
+
+    private static int indexOf(String[] dictionary, String value) {
+        for (int i = 0; i < dictionary.length; i++) {
+            if (dictionary[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    private static long toEpochMinutes(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private static LocalDateTime fromEpochMinutes(long minutes) {
+        return LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+    }
+}
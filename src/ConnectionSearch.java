@@ -0,0 +1,104 @@
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds direct, 1-stop and 2-stop itineraries over the flight schedule.
+ *
+ * The schedule is treated as a time-expanded graph: every flight is an edge from a departure event to an
+ * arrival event, and a connection is only allowed into flights leaving the arrival airport inside the
+ * layover window. Those windows are binary-searched ranges of the repository's departure-sorted buckets,
+ * so the work done is proportional to the flights that can actually be connected, not to the schedule.
+ */
+public class ConnectionSearch {
+    public static final Duration DEFAULT_MIN_LAYOVER = Duration.ofMinutes(60);
+    public static final Duration DEFAULT_MAX_LAYOVER = Duration.ofHours(24);
+    public static final int MAX_STOPS = 2;
+
+    private final FlightRepository flights;
+    private final Duration minLayover;
+    private final Duration maxLayover;
+
+    public ConnectionSearch(FlightRepository flights) {
+        this(flights, DEFAULT_MIN_LAYOVER, DEFAULT_MAX_LAYOVER);
+    }
+
+    public ConnectionSearch(FlightRepository flights, Duration minLayover, Duration maxLayover) {
+        if (flights == null || minLayover == null || maxLayover == null) {
+            throw new IllegalArgumentException("Flights and layover limits must be provided");
+        }
+        if (minLayover.isNegative() || maxLayover.compareTo(minLayover) < 0) {
+            throw new IllegalArgumentException("Layover window must satisfy 0 <= minimum <= maximum");
+        }
+        this.flights = flights;
+        this.minLayover = minLayover;
+        this.maxLayover = maxLayover;
+    }
+
+    public Duration getMinLayover() {
+        return minLayover;
+    }
+
+    public Duration getMaxLayover() {
+        return maxLayover;
+    }
+
+    public List<Itinerary> search(String origin, String destination, LocalDate date, int maxStops) {
+        if (origin == null || destination == null || date == null) {
+            throw new IllegalArgumentException("Origin, destination and date must be provided");
+        }
+        if (maxStops < 0 || maxStops > MAX_STOPS) {
+            throw new IllegalArgumentException("Maximum stops must be between 0 and " + MAX_STOPS);
+        }
+
+        List<Itinerary> itineraries = new ArrayList<>();
+        for (Flight first : flights.findDeparturesBetween(origin, date.atStartOfDay(), date.plusDays(1).atStartOfDay())) {
+            if (first.getDestination().equals(destination)) {
+                itineraries.add(new Itinerary(Arrays.asList(first)));
+                continue;
+            }
+            if (maxStops < 1 || first.getDestination().equals(origin)) {
+                continue;
+            }
+
+            // Last leg straight into the destination
+            for (Flight second : connectionsOnRoute(first, destination)) {
+                itineraries.add(new Itinerary(Arrays.asList(first, second)));
+            }
+
+            if (maxStops < 2) {
+                continue;
+            }
+            for (Flight second : connections(first)) {
+                String via = second.getDestination();
+                if (via.equals(origin) || via.equals(destination) || via.equals(first.getDestination())) {
+                    continue;
+                }
+                for (Flight third : connectionsOnRoute(second, destination)) {
+                    itineraries.add(new Itinerary(Arrays.asList(first, second, third)));
+                }
+            }
+        }
+
+        itineraries.sort(Comparator.comparing(Itinerary::getArrivalTime)
+            .thenComparingInt(Itinerary::getStops)
+            .thenComparing(Itinerary::getDepartureTime, Comparator.reverseOrder()));
+        return itineraries;
+    }
+
+    private List<Flight> connections(Flight inbound) {
+        LocalDateTime arrival = inbound.getArrivalTime();
+        return flights.findDeparturesBetween(inbound.getDestination(),
+            arrival.plus(minLayover), arrival.plus(maxLayover).plusNanos(1));
+    }
+
+    private List<Flight> connectionsOnRoute(Flight inbound, String destination) {
+        LocalDateTime arrival = inbound.getArrivalTime();
+        return flights.findByRouteDepartingBetween(inbound.getDestination(), destination,
+            arrival.plus(minLayover), arrival.plus(maxLayover).plusNanos(1));
+    }
+}
@@ -1,5 +1,7 @@
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 public class Customer extends User {
@@ -8,10 +10,17 @@ public class Customer extends User {
     private List<String> preferences;
 
     public Customer(String username, String password, String name, String email, String contactInfo, String address) {
-        super(username, password, name, email, contactInfo, UserRole.CUSTOMER);
+        this(username, password, name, email, contactInfo, address, false);
+    }
+
+    // Used when loading saved accounts, whose password and email were validated when they were created
+    Customer(String username, String password, String name, String email, String contactInfo, String address,
+             boolean stored) {
+        super(username, password, name, email, contactInfo, UserRole.CUSTOMER, stored);
         this.address = address;
-        this.bookingHistory = new ArrayList<>();
-        this.preferences = new ArrayList<>();
+        // Sessions of the same customer may book concurrently
+        this.bookingHistory = Collections.synchronizedList(new ArrayList<>());
+        this.preferences = Collections.synchronizedList(new ArrayList<>());
     }
 
     public String getAddress() {
@@ -23,7 +32,9 @@ public class Customer extends User {
     }
 
     public List<Booking> getBookingHistory() {
-        return new ArrayList<>(bookingHistory);
+        synchronized (bookingHistory) {
+            return new ArrayList<>(bookingHistory);
+        }
     }
 
     public void addBooking(Booking booking) {
@@ -31,7 +42,9 @@ public class Customer extends User {
     }
 
     public List<String> getPreferences() {
-        return new ArrayList<>(preferences);
+        synchronized (preferences) {
+            return new ArrayList<>(preferences);
+        }
     }
 
     public void addPreference(String preference) {
@@ -44,71 +57,81 @@ public class Customer extends User {
 
     @Override
     public boolean login(String username, String password) {
-        if (!isLoggedIn()) {
-            boolean success = super.login(username, password);
-            if (success) {
-                System.out.println("Customer " + getName() + " logged in successfully");
-            }
-            return success;
+        boolean success = super.login(username, password);
+        if (success) {
+            System.out.println("Customer " + getName() + " logged in successfully");
         }
-        return false;
+        return success;
     }
 
     @Override
-    public void logout() {
-        if (isLoggedIn()) {
-            super.logout();
-            System.out.println("Customer " + getName() + " logged out successfully");
-        } else {
-            throw new IllegalStateException("Customer is not logged in");
-        }
+    public void logout(Session session) {
+        requireSession(session, "Customer is not logged in");
+        System.out.println("Customer " + getName() + " logged out successfully");
     }
 
     @Override
-    public void updateProfile() {
-        if (!isLoggedIn()) {
-            throw new IllegalStateException("Customer must be logged in to update profile");
-        }
+    public void updateProfile(Session session) {
+        requireSession(session, "Customer must be logged in to update profile");
         // Profile update logic would typically involve updating user information
         // This could be expanded based on specific requirements
         System.out.println("Customer profile updated successfully");
     }
 
-    public List<Flight> searchFlights(String origin, String destination, String date) {
-        if (!isLoggedIn()) {
-            throw new IllegalStateException("Customer must be logged in to search flights");
+    public List<Flight> searchFlights(Session session, FlightRepository flights, String origin, String destination,
+                                      String date) {
+        requireSession(session, "Customer must be logged in to search flights");
+
+        if (flights == null || origin == null || destination == null || date == null) {
+            throw new IllegalArgumentException("Origin, destination and date must be provided");
         }
-        
-        List<Flight> availableFlights = new ArrayList<>();
-        // In a real application, this would query a database or external service
-        // For now, we'll return an empty list
-        return availableFlights;
+
+        return flights.findByRouteAndDate(origin.trim(), destination.trim(), LocalDate.parse(date.trim()));
     }
 
-    public Booking createBooking(Flight flight, List<Passenger> passengers) {
-        if (!isLoggedIn()) {
-            throw new IllegalStateException("Customer must be logged in to create a booking");
+    public List<Itinerary> searchConnections(Session session, ConnectionSearch connectionSearch, String origin,
+                                             String destination, String date) {
+        requireSession(session, "Customer must be logged in to search flights");
+
+        if (connectionSearch == null || origin == null || destination == null || date == null) {
+            throw new IllegalArgumentException("Origin, destination and date must be provided");
         }
+
+        List<Itinerary> connections = new ArrayList<>();
+        for (Itinerary itinerary : connectionSearch.search(origin.trim(), destination.trim(),
+                                                           LocalDate.parse(date.trim()), ConnectionSearch.MAX_STOPS)) {
+            if (itinerary.getStops() > 0) {
+                connections.add(itinerary);
+            }
+        }
+        return connections;
+    }
+
+    public Booking createBooking(Session session, Flight flight, List<Passenger> passengers) {
+        requireSession(session, "Customer must be logged in to create a booking");
         
         if (flight == null || passengers == null || passengers.isEmpty()) {
             throw new IllegalArgumentException("Flight and passengers list cannot be null or empty");
         }
 
+        if (!flight.tryReserve(SeatClass.ECONOMY, passengers.size())) {
+            throw new IllegalStateException("Not enough seats available in " + SeatClass.ECONOMY + " class");
+        }
+
         // Create a new booking
         Booking booking = new Booking(this, flight, passengers, SeatClass.ECONOMY); // Default to ECONOMY
         bookingHistory.add(booking);
+        booking.recordInLedgers();
         
         // In a real application, this would be saved to a database
         System.out.println("Booking created successfully for flight " + flight.getFlightNumber());
         return booking;
     }
 
-    public void cancelBooking(String bookingId) {
-        if (!isLoggedIn()) {
-            throw new IllegalStateException("Customer must be logged in to cancel a booking");
-        }
+    public void cancelBooking(Session session, String bookingId) {
+        requireSession(session, "Customer must be logged in to cancel a booking");
 
-        Booking bookingToCancel = bookingHistory.stream()
+        Booking bookingToCancel = getBookingHistory().stream()
             .filter(booking -> booking.getBookingId().equals(bookingId))
             .findFirst()
             .orElseThrow(() -> new IllegalArgumentException("Booking not found"));
@@ -123,10 +146,29 @@ public class Customer extends User {
             throw new IllegalStateException("Cannot cancel booking within 24 hours of departure");
         }
 
-        bookingToCancel.setStatus(BookingStatus.CANCELLED);
+        if (!bookingToCancel.cancelBooking()) {
+            throw new IllegalStateException("Booking is already cancelled");
+        }
         System.out.println("Booking " + bookingId + " cancelled successfully");
     }
 
+    public Booking confirmBooking(Session session, String bookingId) {
+        requireSession(session, "Customer must be logged in to confirm a booking");
+
+        Booking bookingToConfirm = getBookingHistory().stream()
+            .filter(booking -> booking.getBookingId().equals(bookingId))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Booking not found"));
+
+        if (!bookingToConfirm.confirmBooking()) {
+            // Cancelled, possibly because its seat hold ran out, or confirmed already
+            throw new IllegalStateException("Only a reserved booking can be confirmed; this one is "
+                + bookingToConfirm.getStatus());
+        }
+        System.out.println("Booking " + bookingId + " confirmed successfully");
+        return bookingToConfirm;
+    }
+
     @Override
     public String toString() {
         return "Customer{" +
@@ -1,5 +1,18 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -8,224 +21,921 @@ public class FileManager {
     private static final String FLIGHTS_FILE = "flights.txt";
     private static final String BOOKINGS_FILE = "bookings.txt";
     private static final String PASSENGERS_FILE = "passengers.txt";
+    private static final String FLIGHTS_BINARY_FILE = "flights.bin";
+    private static final String BOOKINGS_BINARY_FILE = "bookings.bin";
+    private static final String JOURNAL_FILE = "data.journal";
+    // "binary" keeps the flight and booking snapshots in BinarySnapshot files instead of the .txt files
+    private static final boolean BINARY_STORAGE = "binary".equalsIgnoreCase(System.getProperty("storage.format", "text"));
+    private static final int JOURNAL_BATCH_SIZE = Integer.getInteger("journal.batchSize", 256);
+    private static final long JOURNAL_FLUSH_INTERVAL_MILLIS = Long.getLong("journal.flushIntervalMillis", 5);
+    private static final long COMPACTION_INTERVAL_SECONDS = Long.getLong("compaction.intervalSeconds", 300);
+    private static final String USERS_HEADER = "username|password|name|email|contactInfo|address|role";
+    private static final String FLIGHTS_HEADER = "flightNumber|airline|origin|destination|departureTime|arrivalTime|economyPrice|businessPrice|firstClassPrice|economySeats|businessSeats|firstClassSeats";
+    private static final String BOOKINGS_HEADER = "bookingId|customerUsername|flightNumber|status|seatClass|totalPrice|bookingTime|agentUsername";
+    // Bookings saved before the agent was recorded have no agentUsername field
+    private static final int LEGACY_BOOKING_FIELDS = 7;
+    private static final String PASSENGERS_HEADER = "bookingId|firstName|lastName|passportNumber|nationality|dateOfBirth";
     private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final UserRole[] USER_ROLES = UserRole.values();
+    private static final SeatClass[] SEAT_CLASSES = SeatClass.values();
+    private static final BookingStatus[] BOOKING_STATUSES = BookingStatus.values();
+    private static final int LOAD_PARALLELISM = Math.max(1,
+        Integer.getInteger("load.parallelism", Runtime.getRuntime().availableProcessors()));
+    private static final long LOAD_CHUNK_SIZE = Math.max(1, Long.getLong("load.chunkSizeBytes", 4L << 20));
+
+    // The .txt files are a snapshot; every change since the last compaction is appended to the journal
+    private static Journal journal;
+    private static ScheduledExecutorService compactor;
+    // Held by loads and compaction, so a load never sees a half-swapped snapshot; saves only touch the journal
+    private static final Object snapshotLock = new Object();
+    // Worker threads are daemons and only started when a snapshot spans more than one chunk
+    private static final ForkJoinPool loadPool = new ForkJoinPool(LOAD_PARALLELISM);
+    private static long loadedRecords;
+    private static long loadedBytes;
+    private static long loadNanos;
+
+    /**
+     * Throws IllegalArgumentException if any value contains the field delimiter '|' or a line break, which
+     * would split it into extra fields or records in the journal and the snapshots. Null values pass.
+     */
+    public static void requireStorable(String... values) {
+        for (String value : values) {
+            if (value != null && !isStorable(value)) {
+                throw new IllegalArgumentException("Fields cannot contain '|' or line breaks");
+            }
+        }
+    }
+
+    private static boolean isStorable(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '|' || c == '\n' || c == '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // One record from its fields; callers check input with requireStorable, so a bad field here is a bug
+    private static String record(String... fields) {
+        requireStorable(fields);
+        return String.join("|", fields);
+    }
 
     public static void saveUser(User user) {
-        try (FileWriter fw = new FileWriter(USERS_FILE, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            
-            String address = "";
-            if (user instanceof Customer) {
-                address = ((Customer) user).getAddress();
-            } else if (user instanceof Agent) {
-                address = ((Agent) user).getDepartment();
+        append(Journal.USER, formatUser(user), "user");
+    }
+
+    private static String formatUser(User user) {
+        String address = "";
+        if (user instanceof Customer) {
+            address = ((Customer) user).getAddress();
+        } else if (user instanceof Agent) {
+            address = ((Agent) user).getDepartment();
+        }
+
+        return record(
+            user.getUsername(),
+            user.getPasswordHash(),
+            user.getName(),
+            user.getEmail(),
+            user.getContactInfo(),
+            address,
+            user.getRole().name());
+    }
+
+    /**
+     * Loads the users from the snapshot and the journal. Passwords an older version stored in plain text are
+     * hashed and saved, once, since plain text no longer verifies.
+     */
+    public static UserDirectory loadUsers() {
+        UserDirectory users;
+        synchronized (snapshotLock) {
+            users = loadUsers(USERS_FILE, readJournal("users", Journal.USER));
+        }
+        hashPlainTextPasswords(users);
+        return users;
+    }
+
+    /**
+     * Loads the users, flights and bookings as {@link #loadUsers()}, {@link #loadFlights()} and
+     * {@link #loadBookings} do, but reads and checks the journal once for all of them rather than once per
+     * record type. The journal's records are held, decoded, until the bookings are loaded.
+     */
+    public static LoadedData loadAll() {
+        UserDirectory users;
+        FlightRepository flights;
+        List<Booking> bookings;
+        synchronized (snapshotLock) {
+            Map<Byte, List<String>> journalled = readJournal("the journal", Journal.USER, Journal.FLIGHT,
+                                                             Journal.BOOKING, Journal.PASSENGER);
+            users = loadUsers(USERS_FILE, journalled);
+            flights = loadFlights(journalled);
+            bookings = loadBookings(users, flights, journalled);
+        }
+        hashPlainTextPasswords(users);
+        return new LoadedData(users, flights, bookings);
+    }
+
+    /**
+     * What {@link #loadAll} loaded.
+     */
+    public static final class LoadedData {
+        private final UserDirectory users;
+        private final FlightRepository flights;
+        private final List<Booking> bookings;
+
+        LoadedData(UserDirectory users, FlightRepository flights, List<Booking> bookings) {
+            this.users = users;
+            this.flights = flights;
+            this.bookings = bookings;
+        }
+
+        public UserDirectory getUsers() {
+            return users;
+        }
+
+        public FlightRepository getFlights() {
+            return flights;
+        }
+
+        public List<Booking> getBookings() {
+            return bookings;
+        }
+    }
+
+    private static void hashPlainTextPasswords(UserDirectory users) {
+        List<User> plainText = new ArrayList<>();
+        for (User user : users) {
+            if (!PasswordHasher.isHashed(user.getPasswordHash())) {
+                plainText.add(user);
             }
-            
-            out.println(String.format("%s|%s|%s|%s|%s|%s|%s",
-                user.getUsername(),
-                user.getPassword(),
-                user.getName(),
-                user.getEmail(),
-                user.getContactInfo(),
-                address,
-                user.getRole().name()));
-        } catch (IOException e) {
-            System.err.println("Error saving user: " + e.getMessage());
+        }
+        if (!plainText.isEmpty()) {
+            // Hashing is deliberately slow, so a large legacy file is hashed across all cores
+            plainText.parallelStream().forEach(User::hashPlainTextPassword);
+            List<Journal.Record> records = new ArrayList<>(plainText.size());
+            for (User user : plainText) {
+                records.add(new Journal.Record(Journal.USER, formatUser(user)));
+            }
+            appendAll(records, plainText.size() + " users");
+            System.out.println("Hashed " + plainText.size() + " plain-text passwords");
         }
     }
 
-    public static List<User> loadUsers() {
-        List<User> users = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(USERS_FILE))) {
-            String line;
-            reader.readLine();
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 7) {
-                    try {
-                        UserRole role = UserRole.valueOf(parts[6].trim());
-                        User user;
-                        switch (role) {
-                            case CUSTOMER:
-                                user = new Customer(parts[0], parts[1], parts[2], parts[3], parts[4], parts[5]);
-                                break;
-                            case AGENT:
-                                user = new Agent(parts[0], parts[1], parts[2], parts[3], parts[4], parts[5]);
-                                break;
-                            case ADMINISTRATOR:
-                                user = new Administrator(parts[0], parts[1], parts[2], parts[3], parts[4], 5);
-                                break;
-                            default:
-                                continue;
-                        }
-                        users.add(user);
-                    } catch (IllegalArgumentException e) {
-                        System.err.println("Invalid role in users.txt: " + parts[6]);
-                    }
-                }
+    // Benchmark loads a generated snapshot on its own, without the journal
+    static UserDirectory loadUsers(String filename, boolean replayJournal) {
+        synchronized (snapshotLock) {
+            return loadUsers(filename, replayJournal ? readJournal("users", Journal.USER) : Map.of());
+        }
+    }
+
+    private static UserDirectory loadUsers(String filename, Map<Byte, List<String>> journalled) {
+        // Later records for the same username replace earlier ones
+        UserDirectory users = new UserDirectory();
+        synchronized (snapshotLock) {
+            try {
+                Consumer<User> merge = users::put;
+                scanSnapshot(filename, FileManager::parseUser, merge);
+                replayJournal(journalled, Journal.USER, FileManager::parseUser, merge);
+            } catch (IOException e) {
+                System.err.println("Error loading users: " + e.getMessage());
             }
-        } catch (IOException e) {
-            System.err.println("Error loading users: " + e.getMessage());
         }
         return users;
     }
 
+    private static User parseUser(RecordScanner record) {
+        if (record.fieldCount() < 7) {
+            return null;
+        }
+        UserRole role;
+        try {
+            role = record.parseEnum(6, USER_ROLES);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid role in users.txt: " + record.string(6));
+            return null;
+        }
+        switch (role) {
+            case CUSTOMER:
+                return new Customer(record.string(0), record.string(1), record.string(2), record.string(3),
+                                    record.string(4), record.string(5), true);
+            case AGENT:
+                return new Agent(record.string(0), record.string(1), record.string(2), record.string(3),
+                                 record.string(4), record.string(5), true);
+            case ADMINISTRATOR:
+                return new Administrator(record.string(0), record.string(1), record.string(2), record.string(3),
+                                         record.string(4), 5, true);
+            default:
+                return null;
+        }
+    }
+
     public static void saveFlight(Flight flight) {
-        try (FileWriter fw = new FileWriter(FLIGHTS_FILE, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            
-            out.println(String.format("%s|%s|%s|%s|%s|%s|%.2f|%.2f|%.2f|%d|%d|%d",
-                flight.getFlightNumber(),
-                flight.getAirline(),
-                flight.getOrigin(),
-                flight.getDestination(),
-                flight.getDepartureTime().format(dateFormatter),
-                flight.getArrivalTime().format(dateFormatter),
-                flight.getPrice(SeatClass.ECONOMY),
-                flight.getPrice(SeatClass.BUSINESS),
-                flight.getPrice(SeatClass.FIRST_CLASS),
-                flight.getAvailableSeats(SeatClass.ECONOMY),
-                flight.getAvailableSeats(SeatClass.BUSINESS),
-                flight.getAvailableSeats(SeatClass.FIRST_CLASS)));
-        } catch (IOException e) {
-            System.err.println("Error saving flight: " + e.getMessage());
+        append(Journal.FLIGHT, formatFlight(flight), "flight");
+    }
+
+    /**
+     * Saves the flights as one journal batch, written and fsynced once for all of them.
+     */
+    public static void saveFlights(List<Flight> flights) {
+        List<Journal.Record> records = new ArrayList<>(flights.size());
+        for (Flight flight : flights) {
+            records.add(new Journal.Record(Journal.FLIGHT, formatFlight(flight)));
         }
+        appendAll(records, flights.size() + " flights");
     }
 
-    public static List<Flight> loadFlights() {
-        List<Flight> flights = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(FLIGHTS_FILE))) {
-            String line;
-            reader.readLine();
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 12) {
-                    Flight flight = new Flight(
-                        parts[0].trim(),
-                        parts[1].trim(),
-                        parts[2].trim(),
-                        parts[3].trim(),
-                        LocalDateTime.parse(parts[4].trim(), dateFormatter),
-                        LocalDateTime.parse(parts[5].trim(), dateFormatter)
-                    );
-                    
-                    flight.setPrice(SeatClass.ECONOMY, Double.parseDouble(parts[6].trim()));
-                    flight.setPrice(SeatClass.BUSINESS, Double.parseDouble(parts[7].trim()));
-                    flight.setPrice(SeatClass.FIRST_CLASS, Double.parseDouble(parts[8].trim()));
-                    
-                    flight.setAvailableSeats(SeatClass.ECONOMY, Integer.parseInt(parts[9].trim()));
-                    flight.setAvailableSeats(SeatClass.BUSINESS, Integer.parseInt(parts[10].trim()));
-                    flight.setAvailableSeats(SeatClass.FIRST_CLASS, Integer.parseInt(parts[11].trim()));
-                    
-                    flights.add(flight);
+    private static String formatFlight(Flight flight) {
+        // Joined rather than String.format, which dominated saving an imported schedule
+        return record(
+            flight.getFlightNumber(),
+            flight.getAirline(),
+            flight.getOrigin(),
+            flight.getDestination(),
+            flight.getDepartureTime().format(dateFormatter),
+            flight.getArrivalTime().format(dateFormatter),
+            Money.format(flight.getPrice(SeatClass.ECONOMY)),
+            Money.format(flight.getPrice(SeatClass.BUSINESS)),
+            Money.format(flight.getPrice(SeatClass.FIRST_CLASS)),
+            String.valueOf(flight.getCapacity(SeatClass.ECONOMY)),
+            String.valueOf(flight.getCapacity(SeatClass.BUSINESS)),
+            String.valueOf(flight.getCapacity(SeatClass.FIRST_CLASS)));
+    }
+
+    /**
+     * Loads the flights with all their configured seats available; {@link #loadBookings} then takes the seats
+     * of the bookings back out. The flights are collected in file order and added to the repository in one
+     * {@link FlightRepository#addAll} call, which sorts each route and origin once instead of inserting every
+     * flight at its position. The first record for a flight number wins.
+     */
+    public static FlightRepository loadFlights() {
+        synchronized (snapshotLock) {
+            return loadFlights(readJournal("flights", Journal.FLIGHT));
+        }
+    }
+
+    private static FlightRepository loadFlights(Map<Byte, List<String>> journalled) {
+        FlightRepository flights = new FlightRepository();
+        List<Flight> parsed = new ArrayList<>();
+        synchronized (snapshotLock) {
+            try {
+                if (BINARY_STORAGE) {
+                    long start = System.nanoTime();
+                    BinarySnapshot.readFlights(Paths.get(FLIGHTS_BINARY_FILE), parsed::add);
+                    recordLoad(FLIGHTS_BINARY_FILE, parsed.size(), start);
+                } else {
+                    scanSnapshot(FLIGHTS_FILE, FileManager::parseFlight, parsed::add);
                 }
+                replayJournal(journalled, Journal.FLIGHT, FileManager::parseFlight, parsed::add);
+            } catch (IOException e) {
+                System.err.println("Error loading flights: " + e.getMessage());
+            }
+        }
+
+        // addAll returns the flights it added in order, so the ones it skipped are the duplicates
+        List<Flight> added = flights.addAll(parsed);
+        int next = 0;
+        for (Flight flight : parsed) {
+            if (next < added.size() && added.get(next) == flight) {
+                next++;
+            } else {
+                System.err.println("Duplicate flight number in the flight records: " + flight.getFlightNumber());
             }
-        } catch (IOException e) {
-            System.err.println("Error loading flights: " + e.getMessage());
         }
         return flights;
     }
 
+    private static Flight parseFlight(RecordScanner record) {
+        if (record.fieldCount() < 12) {
+            return null;
+        }
+        Flight flight = new Flight(
+            record.string(0),
+            record.string(1),
+            record.string(2),
+            record.string(3),
+            record.parseDateTime(4),
+            record.parseDateTime(5)
+        );
+
+        flight.setPrice(SeatClass.ECONOMY, record.parseCents(6));
+        flight.setPrice(SeatClass.BUSINESS, record.parseCents(7));
+        flight.setPrice(SeatClass.FIRST_CLASS, record.parseCents(8));
+
+        flight.setAvailableSeats(SeatClass.ECONOMY, record.parseInt(9));
+        flight.setAvailableSeats(SeatClass.BUSINESS, record.parseInt(10));
+        flight.setAvailableSeats(SeatClass.FIRST_CLASS, record.parseInt(11));
+        return flight;
+    }
+
     public static void saveBooking(Booking booking) {
-        try (FileWriter fw = new FileWriter(BOOKINGS_FILE, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            
-            out.println(String.format("%s|%s|%s|%s|%s|%.2f|%s",
-                booking.getBookingId(),
-                booking.getCustomer().getUsername(),
-                booking.getFlight().getFlightNumber(),
-                booking.getStatus(),
-                booking.getSeatClass(),
-                booking.calculateTotalPrice(),
-                booking.getBookingTime().format(dateFormatter)));
-        } catch (IOException e) {
-            System.err.println("Error saving booking: " + e.getMessage());
+        append(Journal.BOOKING, formatBooking(booking), "booking");
+    }
+
+    private static String formatBooking(Booking booking) {
+        return record(
+            booking.getBookingId(),
+            booking.getCustomer().getUsername(),
+            booking.getFlight().getFlightNumber(),
+            booking.getStatus().name(),
+            booking.getSeatClass().name(),
+            Money.format(booking.getTotalPrice()),
+            booking.getBookingTime().format(dateFormatter),
+            booking.getAgent() == null ? "" : booking.getAgent().getUsername());
+    }
+
+    public static List<Booking> loadBookings(UserDirectory users, FlightRepository flights) {
+        synchronized (snapshotLock) {
+            return loadBookings(users, flights, readJournal("bookings", Journal.BOOKING, Journal.PASSENGER));
         }
     }
 
-    public static List<Booking> loadBookings(List<User> users, List<Flight> flights) {
-        List<Booking> bookings = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(BOOKINGS_FILE))) {
-            String line;
-            reader.readLine();
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 7) {
-                    Customer customer = (Customer) users.stream()
-                        .filter(u -> u.getUsername().equals(parts[1]))
-                        .findFirst()
-                        .orElse(null);
-                    
-                    Flight flight = flights.stream()
-                        .filter(f -> f.getFlightNumber().equals(parts[2]))
-                        .findFirst()
-                        .orElse(null);
-                    
-                    if (customer != null && flight != null) {
-                        Booking booking = new Booking(customer, flight, new ArrayList<>(), SeatClass.valueOf(parts[4]));
-                        booking.setStatus(BookingStatus.valueOf(parts[3]));
-                        bookings.add(booking);
+    private static List<Booking> loadBookings(UserDirectory users, FlightRepository flights,
+                                              Map<Byte, List<String>> journalled) {
+        // Build the join side once, so each booking line resolves its customer and agent with a hash lookup
+        Map<String, Customer> customers = new HashMap<>();
+        Map<String, Agent> agents = new HashMap<>();
+        for (User user : users) {
+            if (user instanceof Customer) {
+                customers.put(user.getUsername(), (Customer) user);
+            } else if (user instanceof Agent) {
+                agents.put(user.getUsername(), (Agent) user);
+            }
+        }
+
+        Map<String, List<Passenger>> passengers = loadPassengers(journalled);
+
+        // A booking is saved again whenever it changes, so the last record for an id wins
+        Map<String, Booking> bookings = new LinkedHashMap<>();
+        synchronized (snapshotLock) {
+            try {
+                // Parsing only reads the user, flight and passenger maps, so chunks can be parsed concurrently
+                Function<RecordScanner, Booking> parser = record -> parseBooking(record, customers, agents, flights,
+                                                                                 passengers);
+                Consumer<Booking> merge = booking -> bookings.put(booking.getBookingId(), booking);
+                if (BINARY_STORAGE) {
+                    long start = System.nanoTime();
+                    BinarySnapshot.readBookings(Paths.get(BOOKINGS_BINARY_FILE), customers, agents, flights, passengers,
+                                                merge);
+                    recordLoad(BOOKINGS_BINARY_FILE, bookings.size(), start);
+                } else {
+                    scanSnapshot(BOOKINGS_FILE, parser, merge);
+                }
+                replayJournal(journalled, Journal.BOOKING, parser, merge);
+            } catch (IOException e) {
+                System.err.println("Error loading bookings: " + e.getMessage());
+            }
+        }
+
+        for (Booking booking : bookings.values()) {
+            booking.getCustomer().addBooking(booking);
+            if (booking.getAgent() != null) {
+                booking.getAgent().addManagedBooking(booking);
+            }
+            // Posts to the agent's ledger too, so agent summaries cover bookings made before the restart
+            booking.recordInLedgers();
+            reserveSeats(booking);
+        }
+        return new ArrayList<>(bookings.values());
+    }
+
+    // Flight records hold configured seats, so the seats of every active booking are taken again on load
+    private static void reserveSeats(Booking booking) {
+        int seats = booking.getPassengerCount();
+        if (booking.getStatus() != BookingStatus.CANCELLED && seats > 0
+                && !booking.getFlight().tryReserve(booking.getSeatClass(), seats)) {
+            System.err.println("Booking " + booking.getBookingId() + " has more " + booking.getSeatClass()
+                + " seats than flight " + booking.getFlight().getFlightNumber() + " has left");
+        }
+    }
+
+    private static Booking parseBooking(RecordScanner record, Map<String, Customer> customers,
+                                        Map<String, Agent> agents, FlightRepository flights,
+                                        Map<String, List<Passenger>> passengers) {
+        if (record.fieldCount() < LEGACY_BOOKING_FIELDS) {
+            return null;
+        }
+        Customer customer = customers.get(record.string(1));
+        Flight flight = flights.findByFlightNumber(record.string(2));
+
+        if (customer == null || flight == null) {
+            return null;
+        }
+        String bookingId = record.string(0);
+        // An unknown or empty agent username leaves the booking without an agent, as if booked directly
+        Agent agent = record.fieldCount() > LEGACY_BOOKING_FIELDS ? agents.get(record.string(7)) : null;
+        return new Booking(bookingId, customer, flight, passengers.getOrDefault(bookingId, Collections.emptyList()),
+                           record.parseEnum(4, SEAT_CLASSES), record.parseEnum(3, BOOKING_STATUSES),
+                           record.parseDateTime(6), record.parseCents(5), agent);
+    }
+
+    /**
+     * Saves the bookings and their passengers as one journal batch, written and fsynced once for all of them.
+     */
+    public static void saveBookings(List<Booking> bookings) {
+        List<Journal.Record> records = new ArrayList<>();
+        for (Booking booking : bookings) {
+            records.add(new Journal.Record(Journal.BOOKING, formatBooking(booking)));
+            for (Passenger passenger : booking.getPassengers()) {
+                records.add(new Journal.Record(Journal.PASSENGER, formatPassenger(passenger, booking.getBookingId())));
+            }
+        }
+        appendAll(records, bookings.size() + " bookings");
+    }
+
+    public static void savePassenger(Passenger passenger, String bookingId) {
+        append(Journal.PASSENGER, formatPassenger(passenger, bookingId), "passenger");
+    }
+
+    private static String formatPassenger(Passenger passenger, String bookingId) {
+        return record(
+            bookingId,
+            passenger.getFirstName(),
+            passenger.getLastName(),
+            passenger.getPassportNumber(),
+            passenger.getNationality(),
+            passenger.getDateOfBirth());
+    }
+
+    public static Map<String, List<Passenger>> loadPassengers() {
+        synchronized (snapshotLock) {
+            return loadPassengers(readJournal("passengers", Journal.PASSENGER));
+        }
+    }
+
+    private static Map<String, List<Passenger>> loadPassengers(Map<Byte, List<String>> journalled) {
+        // Grouped by booking id, then keyed by passport number so a passenger replayed from both
+        // snapshot and journal is listed once
+        Map<String, Map<String, Passenger>> passengersByBooking = new HashMap<>();
+        synchronized (snapshotLock) {
+            try {
+                Consumer<Map.Entry<String, Passenger>> merge = entry -> passengersByBooking
+                    .computeIfAbsent(entry.getKey(), k -> new LinkedHashMap<>())
+                    .put(entry.getValue().getPassportNumber(), entry.getValue());
+                scanSnapshot(PASSENGERS_FILE, FileManager::parsePassenger, merge);
+                replayJournal(journalled, Journal.PASSENGER, FileManager::parsePassenger, merge);
+            } catch (IOException e) {
+                System.err.println("Error loading passengers: " + e.getMessage());
+            }
+        }
+
+        Map<String, List<Passenger>> passengers = new HashMap<>();
+        for (Map.Entry<String, Map<String, Passenger>> entry : passengersByBooking.entrySet()) {
+            passengers.put(entry.getKey(), new ArrayList<>(entry.getValue().values()));
+        }
+        return passengers;
+    }
+
+    /**
+     * Hands the current booking records to the consumer as pipe-delimited lines, in the order loadBookings
+     * lists them, without loading them all. The snapshot is read one record at a time; only the journal's
+     * booking records are held, so the last one saved for an id is handed over in place of the snapshot's.
+     * Records are passed on as stored, including ones loadBookings would skip. A binary snapshot's string
+     * table is read whole.
+     */
+    public static void forEachBookingRecord(Consumer<String> consumer) throws IOException {
+        synchronized (snapshotLock) {
+            Map<String, String> journalled = new LinkedHashMap<>();
+            forEachJournalRecord(Journal.BOOKING, record -> journalled.put(key(record, 0), record));
+            Consumer<String> merge = record -> {
+                String latest = journalled.remove(key(record, 0));
+                consumer.accept(latest != null ? latest : record);
+            };
+            if (BINARY_STORAGE) {
+                BinarySnapshot.forEachBookingRecord(Paths.get(BOOKINGS_BINARY_FILE), merge);
+            } else {
+                forEachRecord(BOOKINGS_FILE, merge);
+            }
+            journalled.values().forEach(consumer);
+        }
+    }
+
+    /**
+     * Hands every passenger record to the consumer, the snapshot's and then the journal's, one at a time and
+     * straight from the mapped file. The scanner is reused, so fields must be read before accept returns. A
+     * passenger saved more than once is handed over each time, the last being current.
+     */
+    public static void forEachPassengerRecord(Consumer<RecordScanner> consumer) throws IOException {
+        synchronized (snapshotLock) {
+            boolean header = true;
+            for (ByteBuffer chunk : RecordScanner.map(Paths.get(PASSENGERS_FILE))) {
+                RecordScanner record = new RecordScanner(chunk);
+                while (record.next()) {
+                    if (header) {
+                        header = false;
+                        continue;
                     }
+                    consumer.accept(record);
                 }
             }
+            forEachJournalRecord(Journal.PASSENGER, payload -> {
+                RecordScanner record = RecordScanner.of(payload);
+                if (record.next()) {
+                    consumer.accept(record);
+                }
+            });
+        }
+    }
+
+    // Keyed by the booking id the passenger belongs to
+    private static Map.Entry<String, Passenger> parsePassenger(RecordScanner record) {
+        if (record.fieldCount() < 6) {
+            return null;
+        }
+        return Map.entry(record.string(0), new Passenger(
+            record.string(1),
+            record.string(2),
+            record.string(3),
+            record.string(4),
+            record.string(5)
+        ));
+    }
+
+    private static void append(byte type, String record, String description) {
+        try {
+            if (journal == null) {
+                throw new IOException("journal is not open");
+            }
+            journal.append(type, record);
         } catch (IOException e) {
-            System.err.println("Error loading bookings: " + e.getMessage());
+            System.err.println("Error saving " + description + ": " + e.getMessage());
         }
-        return bookings;
     }
 
-    public static void savePassenger(Passenger passenger, String bookingId) {
-        try (FileWriter fw = new FileWriter(PASSENGERS_FILE, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            
-            out.println(String.format("%s|%s|%s|%s|%s|%s",
-                bookingId,
-                passenger.getFirstName(),
-                passenger.getLastName(),
-                passenger.getPassportNumber(),
-                passenger.getNationality(),
-                passenger.getDateOfBirth()));
+    private static void appendAll(List<Journal.Record> records, String description) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            if (journal == null) {
+                throw new IOException("journal is not open");
+            }
+            journal.appendAll(records);
         } catch (IOException e) {
-            System.err.println("Error saving passenger: " + e.getMessage());
+            System.err.println("Error saving " + description + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parses a snapshot and hands each record to merge in file order. The file is mapped as newline-aligned
+     * chunks; with more than one chunk and a parallelism above 1, chunks are parsed concurrently on the load
+     * pool and merged afterwards, so parsers must not touch shared state. The header line is skipped, and a
+     * malformed record is reported and skipped rather than aborting the load.
+     */
+    private static <T> void scanSnapshot(String filename, Function<RecordScanner, T> parser, Consumer<T> merge)
+            throws IOException {
+        long start = System.nanoTime();
+        List<ByteBuffer> chunks = RecordScanner.map(Paths.get(filename), LOAD_CHUNK_SIZE);
+        long records = 0;
+        if (LOAD_PARALLELISM > 1 && chunks.size() > 1) {
+            List<ForkJoinTask<List<T>>> tasks = new ArrayList<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                ByteBuffer chunk = chunks.get(i);
+                boolean header = i == 0;
+                tasks.add(loadPool.submit(() -> parseChunk(filename, chunk, header, parser)));
+            }
+            for (ForkJoinTask<List<T>> task : tasks) {
+                List<T> parsed = task.join();
+                parsed.forEach(merge);
+                records += parsed.size();
+            }
+        } else {
+            for (int i = 0; i < chunks.size(); i++) {
+                List<T> parsed = parseChunk(filename, chunks.get(i), i == 0, parser);
+                parsed.forEach(merge);
+                records += parsed.size();
+            }
+        }
+
+        recordLoad(filename, records, start);
+    }
+
+    private static void recordLoad(String filename, long records, long start) throws IOException {
+        loadedRecords += records;
+        loadedBytes += Files.size(Paths.get(filename));
+        loadNanos += System.nanoTime() - start;
+    }
+
+    private static <T> List<T> parseChunk(String filename, ByteBuffer chunk, boolean header,
+                                          Function<RecordScanner, T> parser) {
+        List<T> parsed = new ArrayList<>();
+        RecordScanner record = new RecordScanner(chunk);
+        while (record.next()) {
+            if (header) {
+                header = false;
+                continue;
+            }
+            T value = parse(filename, record, parser);
+            if (value != null) {
+                parsed.add(value);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Reads the journal once and returns its records of the given types, by type and in the order they were
+     * saved, so several loads can replay them. A journal that fails partway is reported and the records read
+     * before the failure are kept, as a load keeps what it merged before one.
+     */
+    private static Map<Byte, List<String>> readJournal(String description, byte... types) {
+        Map<Byte, List<String>> records = new HashMap<>();
+        for (byte type : types) {
+            records.put(type, new ArrayList<>());
+        }
+        if (journal != null) {
+            try {
+                journal.replay((type, payload) -> {
+                    List<String> ofType = records.get(type);
+                    if (ofType != null) {
+                        ofType.add(payload);
+                    }
+                });
+            } catch (IOException e) {
+                System.err.println("Error loading " + description + ": " + e.getMessage());
+            }
         }
+        return records;
     }
 
-    public static List<Passenger> loadPassengers(String bookingId) {
-        List<Passenger> passengers = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(PASSENGERS_FILE))) {
+    private static <T> void replayJournal(Map<Byte, List<String>> journalled, byte type,
+                                          Function<RecordScanner, T> parser, Consumer<T> merge) {
+        for (String payload : journalled.getOrDefault(type, List.of())) {
+            RecordScanner record = RecordScanner.of(payload);
+            if (record.next()) {
+                T value = parse(JOURNAL_FILE, record, parser);
+                if (value != null) {
+                    merge.accept(value);
+                }
+            }
+        }
+    }
+
+    private static void forEachJournalRecord(byte type, Consumer<String> consumer) throws IOException {
+        if (journal != null) {
+            journal.replay((recordType, payload) -> {
+                if (recordType == type) {
+                    consumer.accept(payload);
+                }
+            });
+        }
+    }
+
+    private static <T> T parse(String source, RecordScanner record, Function<RecordScanner, T> parser) {
+        try {
+            return parser.apply(record);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            System.err.println("Skipping invalid record in " + source + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Prints how fast the snapshots were read since startup, or since the last report.
+     */
+    public static void reportLoadThroughput() {
+        synchronized (snapshotLock) {
+            double seconds = Math.max(loadNanos, 1) / 1e9;
+            System.out.printf("Loaded %,d records (%.1f MB) in %.0f ms: %,.0f records/sec, %.1f MB/sec, parallelism %d%n",
+                loadedRecords, loadedBytes / 1e6, seconds * 1e3, loadedRecords / seconds,
+                loadedBytes / 1e6 / seconds, LOAD_PARALLELISM);
+            loadedRecords = 0;
+            loadedBytes = 0;
+            loadNanos = 0;
+        }
+    }
+
+    /**
+     * Folds the journal into the .txt snapshots. The journal is rotated first, so saves keep going to a fresh
+     * journal while the old segment is merged; each snapshot is written to a temp file and atomically moved
+     * into place, and the segment is only deleted once all four snapshots are replaced. Records that are not
+     * one line with the snapshot's field count are left out (see {@link #validRecords}).
+     */
+    public static void compact() {
+        if (journal == null) {
+            return;
+        }
+        synchronized (snapshotLock) {
+            try {
+                if (journal.size() == 0 && !Files.exists(journal.getCompactingPath())) {
+                    return;
+                }
+                Path segment = journal.rotate();
+
+                Map<String, String> users = index(readRecords(USERS_FILE), false, 0);
+                Map<String, String> flights = index(BINARY_STORAGE
+                    ? BinarySnapshot.readFlightRecords(Paths.get(FLIGHTS_BINARY_FILE)) : readRecords(FLIGHTS_FILE), true, 0);
+                Map<String, String> bookings = index(withAgentField(BINARY_STORAGE
+                    ? BinarySnapshot.readBookingRecords(Paths.get(BOOKINGS_BINARY_FILE)) : readRecords(BOOKINGS_FILE)), false, 0);
+                Map<String, String> passengers = index(readRecords(PASSENGERS_FILE), false, 0, 3);
+                Journal.read(segment, (type, payload) -> {
+                    switch (type) {
+                        case Journal.USER:
+                            users.put(key(payload, 0), payload);
+                            break;
+                        case Journal.FLIGHT:
+                            // Flights are never re-saved and hold their configured seats, not what is left;
+                            // the first record for a number is the one loaded
+                            flights.putIfAbsent(key(payload, 0), payload);
+                            break;
+                        case Journal.BOOKING:
+                            bookings.put(key(payload, 0), withAgentField(payload));
+                            break;
+                        case Journal.PASSENGER:
+                            passengers.put(key(payload, 0, 3), payload);
+                            break;
+                        default:
+                            System.err.println("Unknown journal record type: " + type);
+                    }
+                });
+
+                writeSnapshot(USERS_FILE, USERS_HEADER, users.values());
+                if (BINARY_STORAGE) {
+                    BinarySnapshot.writeFlights(Paths.get(FLIGHTS_BINARY_FILE),
+                                                validRecords(FLIGHTS_BINARY_FILE, FLIGHTS_HEADER, flights.values()));
+                    BinarySnapshot.writeBookings(Paths.get(BOOKINGS_BINARY_FILE),
+                                                 validRecords(BOOKINGS_BINARY_FILE, BOOKINGS_HEADER, bookings.values()));
+                } else {
+                    writeSnapshot(FLIGHTS_FILE, FLIGHTS_HEADER, flights.values());
+                    writeSnapshot(BOOKINGS_FILE, BOOKINGS_HEADER, bookings.values());
+                }
+                writeSnapshot(PASSENGERS_FILE, PASSENGERS_HEADER, passengers.values());
+                Files.delete(segment);
+            } catch (IOException e) {
+                System.err.println("Error compacting journal: " + e.getMessage());
+            }
+        }
+    }
+
+    private static List<String> withAgentField(List<String> bookings) {
+        List<String> records = new ArrayList<>(bookings.size());
+        for (String booking : bookings) {
+            records.add(withAgentField(booking));
+        }
+        return records;
+    }
+
+    // A booking saved before agents were recorded gets an empty agentUsername, so it keeps the header's shape
+    private static String withAgentField(String booking) {
+        return fieldCount(booking) == LEGACY_BOOKING_FIELDS ? booking + "|" : booking;
+    }
+
+    private static List<String> readRecords(String filename) throws IOException {
+        List<String> records = new ArrayList<>();
+        forEachRecord(filename, records::add);
+        return records;
+    }
+
+    // Every record of a text snapshot in file order, without the header and blank lines
+    private static void forEachRecord(String filename, Consumer<String> consumer) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
             String line;
             reader.readLine();
             while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 6 && parts[0].equals(bookingId)) {
-                    Passenger passenger = new Passenger(
-                        parts[1],
-                        parts[2],
-                        parts[3],
-                        parts[4],
-                        parts[5]
-                    );
-                    passengers.add(passenger);
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    consumer.accept(line);
                 }
             }
+        }
+    }
+
+    private static Map<String, String> index(List<String> lines, boolean keepFirst, int... keyFields) {
+        Map<String, String> records = new LinkedHashMap<>();
+        for (String line : lines) {
+            if (keepFirst) {
+                records.putIfAbsent(key(line, keyFields), line);
+            } else {
+                records.put(key(line, keyFields), line);
+            }
+        }
+        return records;
+    }
+
+    private static String key(String record, int... keyFields) {
+        String[] parts = record.split("\\|");
+        StringBuilder key = new StringBuilder();
+        for (int field : keyFields) {
+            key.append(field < parts.length ? parts[field].trim() : "").append('|');
+        }
+        return key.toString();
+    }
+
+    private static void writeSnapshot(String filename, String header, Collection<String> records) throws IOException {
+        Path target = Paths.get(filename);
+        Path temp = target.resolveSibling(filename + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp)) {
+            writer.write(header);
+            writer.newLine();
+            for (String record : validRecords(filename, header, records)) {
+                writer.write(record);
+                writer.newLine();
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The records that are exactly one line with the header's number of fields. Snapshot lines are trusted
+     * on load, so a journal payload that would read back as a different record, or as several, is reported
+     * and left out rather than copied.
+     */
+    private static List<String> validRecords(String filename, String header, Collection<String> records) {
+        int fieldCount = fieldCount(header);
+        List<String> valid = new ArrayList<>(records.size());
+        for (String record : records) {
+            if (record.indexOf('\n') < 0 && record.indexOf('\r') < 0 && fieldCount(record) == fieldCount) {
+                valid.add(record);
+            } else {
+                System.err.println("Leaving invalid record out of " + filename + ": "
+                    + record.replace("\r", "\\r").replace("\n", "\\n"));
+            }
+        }
+        return valid;
+    }
+
+    private static int fieldCount(String record) {
+        int count = 1;
+        for (int i = 0; i < record.length(); i++) {
+            if (record.charAt(i) == '|') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Rewrites flights.bin and bookings.bin from the text snapshots. Does not fold in the journal.
+     */
+    public static void convertToBinary() throws IOException {
+        synchronized (snapshotLock) {
+            BinarySnapshot.writeFlights(Paths.get(FLIGHTS_BINARY_FILE), readRecords(FLIGHTS_FILE));
+            BinarySnapshot.writeBookings(Paths.get(BOOKINGS_BINARY_FILE), readRecords(BOOKINGS_FILE));
+        }
+    }
+
+    /**
+     * Rewrites flights.txt and bookings.txt from the binary snapshots. Does not fold in the journal.
+     */
+    public static void convertToText() throws IOException {
+        synchronized (snapshotLock) {
+            writeSnapshot(FLIGHTS_FILE, FLIGHTS_HEADER, BinarySnapshot.readFlightRecords(Paths.get(FLIGHTS_BINARY_FILE)));
+            writeSnapshot(BOOKINGS_FILE, BOOKINGS_HEADER, BinarySnapshot.readBookingRecords(Paths.get(BOOKINGS_BINARY_FILE)));
+        }
+    }
+
+    public static void startCompactor() {
+        if (compactor != null) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(FileManager::compact,
+            COMPACTION_INTERVAL_SECONDS, COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static void closeJournal() {
+        try {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
         } catch (IOException e) {
-            System.err.println("Error loading passengers: " + e.getMessage());
+            System.err.println("Error closing journal: " + e.getMessage());
         }
-        return passengers;
+    }
+
+    // Journals to the given file instead of the working directory's, for benchmarks
+    static void openJournal(Path path) throws IOException {
+        closeJournal();
+        journal = Journal.open(path, JOURNAL_BATCH_SIZE, JOURNAL_FLUSH_INTERVAL_MILLIS);
     }
 
     public static void initializeFiles() {
         try {
-            createFileIfNotExists(USERS_FILE, "username|password|name|email|contactInfo|address|role");
-            createFileIfNotExists(FLIGHTS_FILE, "flightNumber|airline|origin|destination|departureTime|arrivalTime|economyPrice|businessPrice|firstClassPrice|economySeats|businessSeats|firstClassSeats");
-            createFileIfNotExists(BOOKINGS_FILE, "bookingId|customerUsername|flightNumber|status|seatClass|totalPrice|bookingTime");
-            createFileIfNotExists(PASSENGERS_FILE, "bookingId|firstName|lastName|passportNumber|nationality|dateOfBirth");
+            createFileIfNotExists(USERS_FILE, USERS_HEADER);
+            createFileIfNotExists(FLIGHTS_FILE, FLIGHTS_HEADER);
+            createFileIfNotExists(BOOKINGS_FILE, BOOKINGS_HEADER);
+            createFileIfNotExists(PASSENGERS_FILE, PASSENGERS_HEADER);
             
             addExampleDataIfEmpty();
+
+            // Switching to binary storage starts from the current text snapshots
+            if (BINARY_STORAGE && !Files.exists(Paths.get(FLIGHTS_BINARY_FILE))) {
+                BinarySnapshot.writeFlights(Paths.get(FLIGHTS_BINARY_FILE), readRecords(FLIGHTS_FILE));
+            }
+            if (BINARY_STORAGE && !Files.exists(Paths.get(BOOKINGS_BINARY_FILE))) {
+                BinarySnapshot.writeBookings(Paths.get(BOOKINGS_BINARY_FILE), readRecords(BOOKINGS_FILE));
+            }
+
+            if (journal == null) {
+                journal = Journal.open(Paths.get(JOURNAL_FILE), JOURNAL_BATCH_SIZE, JOURNAL_FLUSH_INTERVAL_MILLIS);
+                Runtime.getRuntime().addShutdownHook(new Thread(FileManager::closeJournal));
+            }
         } catch (IOException e) {
             System.err.println("Error initializing files: " + e.getMessage());
         }
@@ -235,9 +945,12 @@ public class FileManager {
         try {
             if (new File(USERS_FILE).length() == 0) {
                 try (BufferedWriter writer = new BufferedWriter(new FileWriter(USERS_FILE, true))) {
-                    writer.write("admin|Admin123!|Admin User|admin@example.com|1234567890|Admin Office|ADMINISTRATOR\n");
-                    writer.write("agent1|Agent123!|John Agent|agent@example.com|9876543210|Agent Office|AGENT\n");
-                    writer.write("customer1|Customer123!|Jane Customer|customer@example.com|5555555555|123 Main St|CUSTOMER\n");
+                    writer.write("admin|" + PasswordHasher.hash("Admin123!")
+                        + "|Admin User|admin@example.com|1234567890|Admin Office|ADMINISTRATOR\n");
+                    writer.write("agent1|" + PasswordHasher.hash("Agent123!")
+                        + "|John Agent|agent@example.com|9876543210|Agent Office|AGENT\n");
+                    writer.write("customer1|" + PasswordHasher.hash("Customer123!")
+                        + "|Jane Customer|customer@example.com|5555555555|123 Main St|CUSTOMER\n");
                 }
             }
 
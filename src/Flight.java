@@ -1,16 +1,21 @@
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 public class Flight {
+    private static final int SEAT_CLASS_COUNT = SeatClass.values().length;
+
     private String flightNumber;
     private String airline;
     private String origin;
     private String destination;
     private LocalDateTime departureTime;
     private LocalDateTime arrivalTime;
-    private Map<SeatClass, Integer> availableSeats;
-    private Map<SeatClass, Double> prices;
+    private final AtomicIntegerArray availableSeats;
+    // Configured seats per class, which bookings are taken from; only changed by setAvailableSeats
+    private final int[] capacity;
+    // Cents, indexed by SeatClass.ordinal() like the seat counts; unset classes are priced 0
+    private final long[] prices;
+    private final RevenueLedger ledger = new RevenueLedger();
 
     public Flight(String flightNumber, String airline, String origin, String destination,
                  LocalDateTime departureTime, LocalDateTime arrivalTime) {
@@ -20,14 +25,10 @@ public class Flight {
         this.destination = destination;
         this.departureTime = departureTime;
         this.arrivalTime = arrivalTime;
-        this.availableSeats = new HashMap<>();
-        this.prices = new HashMap<>();
-        
-        // Initialize seats for each class
-        for (SeatClass seatClass : SeatClass.values()) {
-            availableSeats.put(seatClass, 0);
-            prices.put(seatClass, 0.0);
-        }
+        // Seat counts are indexed by SeatClass.ordinal() and updated with CAS, so concurrent bookings never oversell
+        this.availableSeats = new AtomicIntegerArray(SEAT_CLASS_COUNT);
+        this.capacity = new int[SEAT_CLASS_COUNT];
+        this.prices = new long[SEAT_CLASS_COUNT];
     }
 
     public String getFlightNumber() {
@@ -54,25 +55,38 @@ public class Flight {
         return arrivalTime;
     }
 
+    public RevenueLedger getLedger() {
+        return ledger;
+    }
+
     public int getAvailableSeats(SeatClass seatClass) {
-        return availableSeats.getOrDefault(seatClass, 0);
+        return availableSeats.get(seatClass.ordinal());
+    }
+
+    public int getCapacity(SeatClass seatClass) {
+        return capacity[seatClass.ordinal()];
     }
 
+    /**
+     * Configures the class with this many seats, all of them available. Bookings then take seats with
+     * {@link #tryReserve(SeatClass, int)}; on load, FileManager reserves the seats of every booking again.
+     */
     public void setAvailableSeats(SeatClass seatClass, int count) {
         if (count >= 0) {
-            availableSeats.put(seatClass, count);
+            capacity[seatClass.ordinal()] = count;
+            availableSeats.set(seatClass.ordinal(), count);
         } else {
             throw new IllegalArgumentException("Seat count cannot be negative");
         }
     }
 
-    public double getPrice(SeatClass seatClass) {
-        return prices.getOrDefault(seatClass, 0.0);
+    public long getPrice(SeatClass seatClass) {
+        return prices[seatClass.ordinal()];
     }
 
-    public void setPrice(SeatClass seatClass, double price) {
+    public void setPrice(SeatClass seatClass, long price) {
         if (price >= 0) {
-            prices.put(seatClass, price);
+            prices[seatClass.ordinal()] = price;
         } else {
             throw new IllegalArgumentException("Price cannot be negative");
         }
@@ -83,19 +97,77 @@ public class Flight {
     }
 
     public boolean reserveSeat(SeatClass seatClass) {
-        if (checkAvailability(seatClass)) {
-            availableSeats.put(seatClass, availableSeats.get(seatClass) - 1);
-            return true;
-        }
-        return false;
+        return tryReserve(seatClass, 1);
     }
 
     public void releaseSeat(SeatClass seatClass) {
-        availableSeats.put(seatClass, availableSeats.get(seatClass) + 1);
+        release(seatClass, 1);
+    }
+
+    public boolean tryReserve(SeatClass seatClass, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Seat count must be positive");
+        }
+        int index = seatClass.ordinal();
+        while (true) {
+            int available = availableSeats.get(index);
+            if (available < count) {
+                return false;
+            }
+            if (availableSeats.compareAndSet(index, available, available - count)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reserves counts[c] seats in each seat class c (by ordinal) together: if any class is short, the seats
+     * already taken are given back and nothing is reserved.
+     */
+    public boolean tryReserve(int[] counts) {
+        if (counts.length != SEAT_CLASS_COUNT) {
+            throw new IllegalArgumentException("A seat count must be given for every seat class");
+        }
+        for (int count : counts) {
+            if (count < 0) {
+                throw new IllegalArgumentException("Seat count cannot be negative");
+            }
+        }
+        SeatClass[] seatClasses = SeatClass.values();
+        for (int i = 0; i < SEAT_CLASS_COUNT; i++) {
+            if (counts[i] > 0 && !tryReserve(seatClasses[i], counts[i])) {
+                for (int j = 0; j < i; j++) {
+                    release(seatClasses[j], counts[j]);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gives booked seats back. Throws IllegalStateException, releasing nothing, if that would leave more seats
+     * available than the class has.
+     */
+    public void release(SeatClass seatClass, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Seat count cannot be negative");
+        }
+        int index = seatClass.ordinal();
+        while (count > 0) {
+            int available = availableSeats.get(index);
+            if (available + count > capacity[index]) {
+                throw new IllegalStateException("Cannot release " + count + " " + seatClass + " seats on flight "
+                    + flightNumber + ": only " + (capacity[index] - available) + " are booked");
+            }
+            if (availableSeats.compareAndSet(index, available, available + count)) {
+                return;
+            }
+        }
     }
 
-    public double calculatePrice(SeatClass seatClass) {
-        return prices.getOrDefault(seatClass, 0.0);
+    public long calculatePrice(SeatClass seatClass) {
+        return prices[seatClass.ordinal()];
     }
 
     public boolean hasAvailableSeats(SeatClass seatClass, int count) {
@@ -0,0 +1,239 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Streams a flight schedule file into a {@link FlightRepository} in large batches.
+ *
+ * Each line has the flights.txt fields (flight number, airline, origin, destination, departure and arrival
+ * as yyyy-MM-dd HH:mm, economy/business/first class prices, then seats), separated by '|' or by ',' when the
+ * first line has no '|'. Quoted CSV fields are not supported, and a comma-separated line with a '|' in a field
+ * is rejected, since '|' delimits the stored record. A first line starting with "flightNumber", in any case,
+ * is taken as a header.
+ *
+ * Lines are read {@code import.batchSize} (default 50,000) at a time, so the file is never held in memory.
+ * Each batch is parsed and validated in parallel, departure before arrival included, and then added in file
+ * order: flight numbers already in the repository, or earlier in the file, are counted as duplicates and
+ * skipped. The flights a batch added are saved in one journal write before the next batch is read, and a
+ * progress line with the running throughput is printed after each batch.
+ *
+ * Run from the data directory with {@code java -cp src FlightImporter <file>} while the application is
+ * stopped; agents can also import from the Manage Flights menu.
+ */
+public class FlightImporter {
+    public static final int DEFAULT_BATCH_SIZE = Math.max(1, Integer.getInteger("import.batchSize", 50_000));
+
+    private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final int FIELD_COUNT = 12;
+    private static final String HEADER_START = "flightNumber";
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    private final FlightRepository flights;
+    private final int batchSize;
+    private final PrintStream progress;
+
+    public FlightImporter(FlightRepository flights) {
+        this(flights, DEFAULT_BATCH_SIZE, System.out);
+    }
+
+    /**
+     * With a null progress stream nothing is printed.
+     */
+    public FlightImporter(FlightRepository flights, int batchSize, PrintStream progress) {
+        if (flights == null) {
+            throw new IllegalArgumentException("Flight repository cannot be null");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.flights = flights;
+        this.batchSize = batchSize;
+        this.progress = progress;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java FlightImporter <file>");
+            return;
+        }
+        FileManager.initializeFiles();
+        FlightRepository flights = FileManager.loadFlights();
+        Summary summary = new FlightImporter(flights).importFile(Paths.get(args[0]));
+        FileManager.closeJournal();
+        System.out.println(summary);
+        for (String error : summary.getErrors()) {
+            System.out.println("  " + error);
+        }
+    }
+
+    public Summary importFile(Path file) throws IOException {
+        if (file == null || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("Schedule file not found: " + file);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(reader);
+        }
+    }
+
+    public Summary importFrom(BufferedReader reader) throws IOException {
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        List<String> batch = new ArrayList<>(Math.min(batchSize, 1 << 16));
+        long firstLineNumber = 1;
+        char delimiter = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (delimiter == 0) {
+                delimiter = line.indexOf('|') >= 0 ? '|' : ',';
+                if (line.regionMatches(true, 0, HEADER_START, 0, HEADER_START.length())) {
+                    firstLineNumber++;
+                    continue;
+                }
+            }
+            batch.add(line);
+            if (batch.size() == batchSize) {
+                importBatch(batch, firstLineNumber, delimiter, summary);
+                firstLineNumber += batch.size();
+                batch.clear();
+                reportProgress(summary, start);
+            }
+        }
+        if (!batch.isEmpty()) {
+            importBatch(batch, firstLineNumber, delimiter, summary);
+            reportProgress(summary, start);
+        }
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    private void importBatch(List<String> lines, long firstLineNumber, char delimiter, Summary summary) {
+        // Parsing and validation touch nothing shared, so the batch is split across the common pool
+        Flight[] parsed = new Flight[lines.size()];
+        String[] errors = new String[lines.size()];
+        IntStream.range(0, lines.size()).parallel().forEach(i -> {
+            try {
+                parsed[i] = parse(lines.get(i), delimiter);
+            } catch (RuntimeException e) {
+                errors[i] = e.getMessage();
+            }
+        });
+
+        List<Flight> valid = new ArrayList<>(lines.size());
+        for (int i = 0; i < parsed.length; i++) {
+            if (parsed[i] != null) {
+                valid.add(parsed[i]);
+            } else if (errors[i] != null) {
+                summary.rejected++;
+                if (summary.errors.size() < MAX_REPORTED_ERRORS) {
+                    summary.errors.add("Line " + (firstLineNumber + i) + ": " + errors[i]);
+                }
+            }
+        }
+        List<Flight> added = flights.addAll(valid);
+        FileManager.saveFlights(added);
+        summary.lines += lines.size();
+        summary.imported += added.size();
+        summary.duplicates += valid.size() - added.size();
+    }
+
+    // The flight on the line, or null for a blank line; a line that is not a valid flight throws
+    private static Flight parse(String line, char delimiter) {
+        if (line.trim().isEmpty()) {
+            return null;
+        }
+        String[] fields = split(line, delimiter);
+        if (fields.length != FIELD_COUNT) {
+            throw new IllegalArgumentException("Expected " + FIELD_COUNT + " fields but found " + fields.length);
+        }
+        FileManager.requireStorable(fields);
+        for (int i = 0; i < 6; i++) {
+            if (fields[i].isEmpty()) {
+                throw new IllegalArgumentException("All flight details must be provided");
+            }
+        }
+        LocalDateTime departureTime = LocalDateTime.parse(fields[4], dateFormatter);
+        LocalDateTime arrivalTime = LocalDateTime.parse(fields[5], dateFormatter);
+        if (!departureTime.isBefore(arrivalTime)) {
+            throw new IllegalArgumentException("Departure time must be before arrival time");
+        }
+        Flight flight = new Flight(fields[0], fields[1], fields[2], fields[3], departureTime, arrivalTime);
+        flight.setPrice(SeatClass.ECONOMY, Money.parse(fields[6]));
+        flight.setPrice(SeatClass.BUSINESS, Money.parse(fields[7]));
+        flight.setPrice(SeatClass.FIRST_CLASS, Money.parse(fields[8]));
+        flight.setAvailableSeats(SeatClass.ECONOMY, Integer.parseInt(fields[9]));
+        flight.setAvailableSeats(SeatClass.BUSINESS, Integer.parseInt(fields[10]));
+        flight.setAvailableSeats(SeatClass.FIRST_CLASS, Integer.parseInt(fields[11]));
+        return flight;
+    }
+
+    private static String[] split(String line, char delimiter) {
+        List<String> fields = new ArrayList<>(FIELD_COUNT);
+        int start = 0;
+        int end;
+        while ((end = line.indexOf(delimiter, start)) >= 0) {
+            fields.add(line.substring(start, end).trim());
+            start = end + 1;
+        }
+        fields.add(line.substring(start).trim());
+        return fields.toArray(new String[0]);
+    }
+
+    private void reportProgress(Summary summary, long start) {
+        if (progress != null) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            progress.printf("Read %,d lines: %,d imported, %,d duplicates, %,d rejected (%,.0f lines/sec)%n",
+                summary.lines, summary.imported, summary.duplicates, summary.rejected, summary.lines / seconds);
+        }
+    }
+
+    /**
+     * Counts for one import, and the first few rejected lines.
+     */
+    public static class Summary {
+        private long lines;
+        private long imported;
+        private long duplicates;
+        private long rejected;
+        private long elapsedNanos;
+        private final List<String> errors = new ArrayList<>();
+
+        public long getLines() {
+            return lines;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public List<String> getErrors() {
+            return new ArrayList<>(errors);
+        }
+
+        public double getLinesPerSecond() {
+            return elapsedNanos == 0 ? 0 : lines / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %,d of %,d lines in %.1f s (%,.0f lines/sec): %,d duplicates, %,d rejected",
+                imported, lines, elapsedNanos / 1e9, getLinesPerSecond(), duplicates, rejected);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The flight schedule, indexed by flight number, route and origin.
+ *
+ * Safe for concurrent use: searches share a read lock and adds take the write lock. Every list returned is
+ * a copy, so callers can keep it while flights are being added.
+ */
+public class FlightRepository implements Iterable<Flight> {
+    private final Map<String, Flight> flightsByNumber;
+    private final Map<String, List<Flight>> flightsByRoute;
+    private final Map<String, List<Flight>> flightsByOrigin;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public FlightRepository() {
+        this.flightsByNumber = new LinkedHashMap<>();
+        this.flightsByRoute = new HashMap<>();
+        this.flightsByOrigin = new HashMap<>();
+    }
+
+    public boolean add(Flight flight) {
+        if (flight == null) {
+            throw new IllegalArgumentException("Flight cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            return addLocked(flight);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the flights in order under one write lock and returns those added; a flight whose number is already
+     * scheduled, or appears earlier in the list, is skipped. The new flights are appended to the route and
+     * origin buckets and each bucket they touched is sorted once afterwards, rather than each flight being
+     * inserted at its position.
+     */
+    public List<Flight> addAll(List<Flight> flights) {
+        List<Flight> added = new ArrayList<>(flights.size());
+        lock.writeLock().lock();
+        try {
+            Set<List<Flight>> unsorted = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Flight flight : flights) {
+                if (flight == null) {
+                    throw new IllegalArgumentException("Flight cannot be null");
+                }
+                if (flightsByNumber.containsKey(flight.getFlightNumber())) {
+                    continue;
+                }
+                flightsByNumber.put(flight.getFlightNumber(), flight);
+                List<Flight> route = routeBucket(flight);
+                route.add(flight);
+                unsorted.add(route);
+                List<Flight> departures = originBucket(flight);
+                departures.add(flight);
+                unsorted.add(departures);
+                added.add(flight);
+            }
+            // A stable sort keeps flights with equal departure times in the order they were added
+            for (List<Flight> bucket : unsorted) {
+                bucket.sort(Comparator.comparing(Flight::getDepartureTime));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return added;
+    }
+
+    private boolean addLocked(Flight flight) {
+        if (flightsByNumber.containsKey(flight.getFlightNumber())) {
+            return false;
+        }
+        flightsByNumber.put(flight.getFlightNumber(), flight);
+        List<Flight> route = routeBucket(flight);
+        route.add(upperBound(route, flight.getDepartureTime()), flight);
+        List<Flight> departures = originBucket(flight);
+        departures.add(upperBound(departures, flight.getDepartureTime()), flight);
+        return true;
+    }
+
+    private List<Flight> routeBucket(Flight flight) {
+        return flightsByRoute.computeIfAbsent(routeKey(flight.getOrigin(), flight.getDestination()),
+                                              k -> new ArrayList<>());
+    }
+
+    private List<Flight> originBucket(Flight flight) {
+        return flightsByOrigin.computeIfAbsent(flight.getOrigin(), k -> new ArrayList<>());
+    }
+
+    public Flight findByFlightNumber(String flightNumber) {
+        lock.readLock().lock();
+        try {
+            return flightsByNumber.get(flightNumber);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String flightNumber) {
+        lock.readLock().lock();
+        try {
+            return flightsByNumber.containsKey(flightNumber);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Flight> findByRoute(String origin, String destination) {
+        lock.readLock().lock();
+        try {
+            List<Flight> route = flightsByRoute.get(routeKey(origin, destination));
+            return route == null ? new ArrayList<>() : new ArrayList<>(route);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Flight> findByRouteAndDate(String origin, String destination, LocalDate date) {
+        return findByRouteDepartingBetween(origin, destination, date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+    }
+
+    public List<Flight> findByRouteDepartingBetween(String origin, String destination,
+                                                   LocalDateTime from, LocalDateTime to) {
+        lock.readLock().lock();
+        try {
+            return departingBetween(flightsByRoute.get(routeKey(origin, destination)), from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Flight> findDeparturesBetween(String origin, LocalDateTime from, LocalDateTime to) {
+        lock.readLock().lock();
+        try {
+            return departingBetween(flightsByOrigin.get(origin), from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Flight> getAll() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(flightsByNumber.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return flightsByNumber.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Iterates over a snapshot of the flights taken when the iterator is created.
+     */
+    @Override
+    public Iterator<Flight> iterator() {
+        return Collections.unmodifiableList(getAll()).iterator();
+    }
+
+    // Route and origin buckets are kept sorted by departure time, so a time window is a contiguous range
+    private static List<Flight> departingBetween(List<Flight> bucket, LocalDateTime from, LocalDateTime to) {
+        if (bucket == null) {
+            return new ArrayList<>();
+        }
+        int start = lowerBound(bucket, from);
+        int end = Math.max(start, lowerBound(bucket, to));
+        return new ArrayList<>(bucket.subList(start, end));
+    }
+
+    private static int lowerBound(List<Flight> bucket, LocalDateTime time) {
+        int low = 0;
+        int high = bucket.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bucket.get(mid).getDepartureTime().isBefore(time)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int upperBound(List<Flight> bucket, LocalDateTime time) {
+        int low = 0;
+        int high = bucket.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bucket.get(mid).getDepartureTime().isAfter(time)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    // '|' is the field delimiter of the data files, so it can never appear inside an airport name
+    private static String routeKey(String origin, String destination) {
+        return origin + "|" + destination;
+    }
+}
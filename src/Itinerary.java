@@ -0,0 +1,60 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Itinerary {
+    private final List<Flight> legs;
+
+    public Itinerary(List<Flight> legs) {
+        if (legs == null || legs.isEmpty()) {
+            throw new IllegalArgumentException("Itinerary must contain at least one flight");
+        }
+        this.legs = new ArrayList<>(legs);
+    }
+
+    public List<Flight> getLegs() {
+        return new ArrayList<>(legs);
+    }
+
+    public String getOrigin() {
+        return legs.get(0).getOrigin();
+    }
+
+    public String getDestination() {
+        return legs.get(legs.size() - 1).getDestination();
+    }
+
+    public LocalDateTime getDepartureTime() {
+        return legs.get(0).getDepartureTime();
+    }
+
+    public LocalDateTime getArrivalTime() {
+        return legs.get(legs.size() - 1).getArrivalTime();
+    }
+
+    public int getStops() {
+        return legs.size() - 1;
+    }
+
+    public Duration getTotalDuration() {
+        return Duration.between(getDepartureTime(), getArrivalTime());
+    }
+
+    public long getPrice(SeatClass seatClass) {
+        long total = 0;
+        for (Flight leg : legs) {
+            total += leg.getPrice(seatClass);
+        }
+        return total;
+    }
+
+    public boolean hasAvailableSeats(SeatClass seatClass, int count) {
+        for (Flight leg : legs) {
+            if (!leg.hasAvailableSeats(seatClass, count)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
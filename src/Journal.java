@@ -0,0 +1,323 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log shared by all record types.
+ *
+ * Each record is framed as {@code [int length][int crc32][byte type][payload]}, where the CRC covers the type
+ * and the UTF-8 payload. Appends go into an in-memory batch; the batch is written and fsynced as one group
+ * commit once it holds {@code batchSize} records, or every {@code flushIntervalMillis} by a background flusher,
+ * whichever comes first. A torn or corrupt tail left by a crash is truncated when the journal is opened. If a
+ * group commit fails, its records go back in front of the batch being filled, any part of them already
+ * written is cut off the file, and the error is thrown to the caller of {@link #sync()}; the next sync, the
+ * flusher's or a caller's, writes them again.
+ *
+ * For compaction the journal can be rotated: the records written so far move to a sibling ".compacting"
+ * segment and appends continue into a fresh file. Until the segment is deleted, replay reads it first.
+ */
+public class Journal implements Closeable {
+    public static final byte USER = 1;
+    public static final byte FLIGHT = 2;
+    public static final byte BOOKING = 3;
+    public static final byte PASSENGER = 4;
+
+    private static final int HEADER_SIZE = 9;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    public interface RecordHandler {
+        void handle(byte type, String payload);
+    }
+
+    // One record for appendAll
+    public static final class Record {
+        private final byte type;
+        private final String payload;
+
+        public Record(byte type, String payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    private final Path path;
+    private FileChannel channel;
+    private final int batchSize;
+    private final Object writeLock = new Object();
+    private final ScheduledExecutorService flusher;
+    private ByteBuffer active;
+    private ByteBuffer spare;
+    private int pendingRecords;
+    private boolean closed;
+    // File length after the last successful group commit; a failed one may have left bytes past it
+    private long committedEnd;
+    private boolean torn;
+
+    private Journal(Path path, FileChannel channel, long committedEnd, int batchSize, long flushIntervalMillis) {
+        this.path = path;
+        this.channel = channel;
+        this.batchSize = batchSize;
+        this.active = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        this.spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        this.committedEnd = committedEnd;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                sync();
+            } catch (IOException e) {
+                System.err.println("Error flushing journal: " + e.getMessage());
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static Journal open(Path path, int batchSize, long flushIntervalMillis) throws IOException {
+        if (batchSize < 1 || flushIntervalMillis < 1) {
+            throw new IllegalArgumentException("Batch size and flush interval must be positive");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validEnd = scan(path, channel.size(), null);
+        if (validEnd < channel.size()) {
+            System.err.println("Journal " + path + " has a torn tail; truncating "
+                + (channel.size() - validEnd) + " bytes");
+            channel.truncate(validEnd);
+            channel.force(true);
+        }
+        channel.position(validEnd);
+        return new Journal(path, channel, validEnd, batchSize, flushIntervalMillis);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public Path getCompactingPath() {
+        return path.resolveSibling(path.getFileName() + ".compacting");
+    }
+
+    /**
+     * Moves every record appended so far into the compacting segment and returns it. If a segment is still
+     * there from an interrupted compaction, nothing is rotated and that segment is returned instead.
+     */
+    public Path rotate() throws IOException {
+        synchronized (writeLock) {
+            Path segment = getCompactingPath();
+            if (Files.exists(segment)) {
+                return segment;
+            }
+            sync();
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Journal is closed");
+                }
+            }
+            channel.close();
+            Files.move(path, segment, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            committedEnd = 0;
+            return segment;
+        }
+    }
+
+    public long size() throws IOException {
+        synchronized (writeLock) {
+            long size = channel.size();
+            synchronized (this) {
+                return size + active.position();
+            }
+        }
+    }
+
+    public void append(byte type, String payload) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        boolean commit;
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Journal is closed");
+            }
+            put(type, bytes);
+            commit = ++pendingRecords >= batchSize;
+        }
+        if (commit) {
+            sync();
+        }
+    }
+
+    /**
+     * Appends the records together and commits them before returning, so they reach the file in one write and
+     * one fsync rather than one group commit each.
+     */
+    public void appendAll(List<Record> records) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(records.size());
+        for (Record record : records) {
+            encoded.add(record.payload.getBytes(StandardCharsets.UTF_8));
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Journal is closed");
+            }
+            for (int i = 0; i < encoded.size(); i++) {
+                put(records.get(i).type, encoded.get(i));
+            }
+            pendingRecords += encoded.size();
+        }
+        sync();
+    }
+
+    // Frames one record into the active buffer; the caller holds the monitor
+    private void put(byte type, byte[] bytes) {
+        int frameSize = HEADER_SIZE + bytes.length;
+        if (active.remaining() < frameSize) {
+            // Grow instead of flushing inline, so appenders never wait on disk while holding the lock
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(active.capacity() * 2, active.position() + frameSize));
+            active.flip();
+            grown.put(active);
+            active = grown;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(bytes);
+        active.putInt(bytes.length);
+        active.putInt((int) crc.getValue());
+        active.put(type);
+        active.put(bytes);
+    }
+
+    /**
+     * Writes and fsyncs every record appended so far. Appenders keep filling the other buffer meanwhile. If
+     * the write or fsync fails, the records are kept for the next sync and the error is thrown.
+     */
+    public void sync() throws IOException {
+        synchronized (writeLock) {
+            ByteBuffer batch;
+            int records;
+            synchronized (this) {
+                if (active.position() == 0) {
+                    return;
+                }
+                batch = active;
+                records = pendingRecords;
+                active = spare;
+                pendingRecords = 0;
+            }
+            batch.flip();
+            try {
+                if (torn) {
+                    channel.truncate(committedEnd);
+                    channel.position(committedEnd);
+                    torn = false;
+                }
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+                committedEnd = channel.position();
+            } catch (IOException e) {
+                torn = true;
+                requeue(batch, records);
+                throw e;
+            }
+            batch.clear();
+            spare = batch;
+        }
+    }
+
+    // Puts a batch that failed to commit back in front of the records appended since; the caller holds writeLock
+    private synchronized void requeue(ByteBuffer batch, int records) {
+        batch.rewind();
+        ByteBuffer merged = ByteBuffer.allocate(Math.max(INITIAL_BUFFER_SIZE, batch.limit() + active.position()));
+        merged.put(batch);
+        active.flip();
+        merged.put(active);
+        active.clear();
+        batch.clear();
+        spare = active;
+        active = merged;
+        pendingRecords += records;
+    }
+
+    public void replay(RecordHandler handler) throws IOException {
+        Path segment = getCompactingPath();
+        if (Files.exists(segment)) {
+            read(segment, handler);
+        }
+        long limit;
+        synchronized (writeLock) {
+            sync();
+            limit = channel.size();
+        }
+        scan(path, limit, handler);
+    }
+
+    public static void read(Path file, RecordHandler handler) throws IOException {
+        scan(file, Files.size(file), handler);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        synchronized (writeLock) {
+            sync();
+            synchronized (this) {
+                closed = true;
+            }
+            channel.close();
+        }
+    }
+
+    // Returns the offset just past the last intact record; handler may be null to only validate
+    private static long scan(Path path, long limit, RecordHandler handler) throws IOException {
+        long offset = 0;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(Channels.newInputStream(in), 1 << 16))) {
+            CRC32 crc = new CRC32();
+            byte[] bytes = new byte[256];
+            while (offset + HEADER_SIZE <= limit) {
+                int length = data.readInt();
+                int checksum = data.readInt();
+                byte type = data.readByte();
+                if (length < 0 || offset + HEADER_SIZE + length > limit) {
+                    break;
+                }
+                if (bytes.length < length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                data.readFully(bytes, 0, length);
+                crc.reset();
+                crc.update(type);
+                crc.update(bytes, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                if (handler != null) {
+                    handler.handle(type, new String(bytes, 0, length, StandardCharsets.UTF_8));
+                }
+                offset += HEADER_SIZE + length;
+            }
+        } catch (EOFException e) {
+            // A record cut short by a crash; everything before offset is intact
+        }
+        return offset;
+    }
+}
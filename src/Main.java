@@ -1,34 +1,40 @@
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Scanner;
 import java.util.List;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
 
 public class Main {
     private static Scanner scanner = new Scanner(System.in);
-    private static User currentUser = null;
-    private static List<User> users;
-    private static List<Flight> flights;
+    private static BookingService service;
+    // The interactive user's session, or null when nobody is logged in; the user is looked up from it
+    private static String sessionToken;
     private static DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
     public static void main(String[] args) {
         try {
-            FileManager.initializeFiles();
-            users = FileManager.loadUsers();
-            if (users.isEmpty()) {
+            service = BookingService.load();
+            if (service.getUsers().isEmpty()) {
                 System.err.println("Error: No users loaded. Please check users.txt file.");
                 return;
             }
-            flights = FileManager.loadFlights();
+            FileManager.startCompactor();
             
             boolean running = true;
             while (running) {
-                if (currentUser == null) {
+                if (sessionToken == null) {
                     showLoginMenu();
-                } else {
-                    showUserMenu();
+                    continue;
+                }
+                try {
+                    showUserMenu(service.getUser(sessionToken));
+                } catch (SecurityException e) {
+                    System.out.println("\nSession expired. Please log in again.");
+                    sessionToken = null;
                 }
             }
         } catch (Exception e) {
@@ -62,10 +68,10 @@ public class Main {
         }
     }
 
-    private static void showUserMenu() {
-        System.out.println("\n=== Welcome, " + currentUser.getName() + " ===");
+    private static void showUserMenu(User user) {
+        System.out.println("\n=== Welcome, " + user.getName() + " ===");
         
-        switch (currentUser.getRole()) {
+        switch (user.getRole()) {
             case CUSTOMER:
                 showCustomerMenu();
                 break;
@@ -84,24 +90,12 @@ public class Main {
         System.out.print("Enter password: ");
         String password = scanner.nextLine();
 
-        for (User user : users) {
-            if (user.getUsername().equals(username)) {
-                try {
-                    if (user.login(username, password)) {
-                        currentUser = user;
-                        System.out.println("Login successful!");
-                        return;
-                    } else {
-                        System.out.println("Invalid password. Please try again.");
-                        return;
-                    }
-                } catch (IllegalArgumentException e) {
-                    System.out.println("Login error: " + e.getMessage());
-                    return;
-                }
-            }
+        try {
+            sessionToken = service.login(username, password);
+            System.out.println("Login successful!");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage() + ". Please try again.");
         }
-        System.out.println("Username not found. Please try again.");
     }
 
     private static void register() {
@@ -109,7 +103,7 @@ public class Main {
         System.out.print("Enter username: ");
         String username = scanner.nextLine();
         
-        if (users.stream().anyMatch(u -> u.getUsername().equals(username))) {
+        if (service.getUsers().containsUsername(username)) {
             System.out.println("Username already exists. Please choose another one.");
             return;
         }
@@ -126,9 +120,7 @@ public class Main {
         String address = scanner.nextLine();
 
         try {
-            Customer newCustomer = new Customer(username, password, name, email, contactInfo, address);
-            FileManager.saveUser(newCustomer);
-            users.add(newCustomer);
+            service.register(username, password, name, email, contactInfo, address);
             System.out.println("Registration successful! Please login.");
         } catch (IllegalArgumentException e) {
             System.out.println("Registration failed: " + e.getMessage());
@@ -157,8 +149,8 @@ public class Main {
                 updateProfile();
                 break;
             case 4:
-                currentUser.logout();
-                currentUser = null;
+                service.logout(sessionToken);
+                sessionToken = null;
                 break;
             default:
                 System.out.println("Invalid choice. Please try again.");
@@ -175,19 +167,35 @@ public class Main {
         String dateStr = scanner.nextLine();
 
         try {
-            LocalDateTime date = LocalDateTime.parse(dateStr + " 00:00", dateFormatter);
-            List<Flight> availableFlights = ((Customer) currentUser).searchFlights(origin, destination, dateStr);
+            List<Flight> availableFlights = service.searchFlights(sessionToken, origin, destination, dateStr);
             
-            if (availableFlights.isEmpty()) {
+            List<Itinerary> connections = service.searchConnections(sessionToken, origin, destination, dateStr);
+
+            if (availableFlights.isEmpty() && connections.isEmpty()) {
                 System.out.println("No flights found for the given criteria.");
-            } else {
+                return;
+            }
+            if (!availableFlights.isEmpty()) {
                 System.out.println("\nAvailable Flights:");
                 for (Flight flight : availableFlights) {
                     System.out.println("Flight: " + flight.getFlightNumber());
                     System.out.println("Airline: " + flight.getAirline());
                     System.out.println("Departure: " + flight.getDepartureTime().format(dateFormatter));
                     System.out.println("Arrival: " + flight.getArrivalTime().format(dateFormatter));
-                    System.out.println("Price: $" + flight.getPrice(SeatClass.ECONOMY));
+                    System.out.println("Price: $" + Money.format(flight.getPrice(SeatClass.ECONOMY)));
+                    System.out.println("------------------------");
+                }
+            }
+            if (!connections.isEmpty()) {
+                System.out.println("\nConnecting Flights:");
+                for (Itinerary itinerary : connections) {
+                    for (Flight leg : itinerary.getLegs()) {
+                        System.out.println("Flight: " + leg.getFlightNumber() + " (" + leg.getOrigin() + " -> "
+                            + leg.getDestination() + ", " + leg.getDepartureTime().format(dateFormatter) + " - "
+                            + leg.getArrivalTime().format(dateFormatter) + ")");
+                    }
+                    System.out.println("Stops: " + itinerary.getStops());
+                    System.out.println("Price: $" + Money.format(itinerary.getPrice(SeatClass.ECONOMY)));
                     System.out.println("------------------------");
                 }
             }
@@ -197,11 +205,8 @@ public class Main {
     }
 
     private static void viewBookings() {
-        Customer customer = (Customer) currentUser;
-        List<Booking> bookings = FileManager.loadBookings(users, flights).stream()
-            .filter(b -> b.getCustomer().getUsername().equals(customer.getUsername()))
-            .collect(Collectors.toList());
-        
+        List<Booking> bookings = service.getBookings(sessionToken);
+
         if (bookings.isEmpty()) {
             System.out.println("No bookings found.");
             return;
@@ -213,34 +218,37 @@ public class Main {
             System.out.println("Flight: " + booking.getFlight().getFlightNumber());
             System.out.println("Status: " + booking.getStatus());
             System.out.println("Seat Class: " + booking.getSeatClass());
-            System.out.println("Total Price: $" + booking.calculateTotalPrice());
+            System.out.println("Total Price: $" + Money.format(booking.getTotalPrice()));
             
-            // Load and display passengers
-            List<Passenger> passengers = FileManager.loadPassengers(booking.getBookingId());
             System.out.println("Passengers:");
-            for (Passenger passenger : passengers) {
+            for (Passenger passenger : booking.getPassengers()) {
                 System.out.println("  - " + passenger.getFirstName() + " " + passenger.getLastName());
             }
             System.out.println("------------------------");
         }
 
         System.out.println("\n1. Cancel Booking");
-        System.out.println("2. Return to Menu");
+        System.out.println("2. Confirm Booking");
+        System.out.println("3. Return to Menu");
         System.out.print("Enter your choice: ");
         
         int choice = scanner.nextInt();
         scanner.nextLine(); 
 
-        if (choice == 1) {
+        if (choice == 2) {
+            System.out.print("Enter booking ID to confirm: ");
+            String bookingId = scanner.nextLine();
+            try {
+                service.confirmBooking(sessionToken, bookingId);
+                System.out.println("Booking confirmed.");
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        } else if (choice == 1) {
             System.out.print("Enter booking ID to cancel: ");
             String bookingId = scanner.nextLine();
             try {
-                customer.cancelBooking(bookingId);
-                // Update booking status in file
-                FileManager.saveBooking(customer.getBookingHistory().stream()
-                    .filter(b -> b.getBookingId().equals(bookingId))
-                    .findFirst()
-                    .orElseThrow(() -> new IllegalArgumentException("Booking not found")));
+                service.cancelBooking(sessionToken, bookingId);
                 System.out.println("Booking cancelled successfully.");
             } catch (IllegalArgumentException | IllegalStateException e) {
                 System.out.println("Error: " + e.getMessage());
@@ -249,7 +257,6 @@ public class Main {
     }
 
     private static void updateProfile() {
-        Customer customer = (Customer) currentUser;
         System.out.println("\n=== Update Profile ===");
         System.out.println("1. Update Name");
         System.out.println("2. Update Email");
@@ -266,23 +273,23 @@ public class Main {
             switch (choice) {
                 case 1:
                     System.out.print("Enter new name: ");
-                    customer.setName(scanner.nextLine());
+                    service.updateProfile(sessionToken, scanner.nextLine(), null, null, null, null);
                     break;
                 case 2:
                     System.out.print("Enter new email: ");
-                    customer.setEmail(scanner.nextLine());
+                    service.updateProfile(sessionToken, null, scanner.nextLine(), null, null, null);
                     break;
                 case 3:
                     System.out.print("Enter new contact info: ");
-                    customer.setContactInfo(scanner.nextLine());
+                    service.updateProfile(sessionToken, null, null, scanner.nextLine(), null, null);
                     break;
                 case 4:
                     System.out.print("Enter new address: ");
-                    customer.setAddress(scanner.nextLine());
+                    service.updateProfile(sessionToken, null, null, null, scanner.nextLine(), null);
                     break;
                 case 5:
                     System.out.print("Enter new password: ");
-                    customer.setPassword(scanner.nextLine());
+                    service.updateProfile(sessionToken, null, null, null, null, scanner.nextLine());
                     break;
                 case 6:
                     return;
@@ -290,7 +297,6 @@ public class Main {
                     System.out.println("Invalid choice.");
                     return;
             }
-            customer.updateProfile();
             System.out.println("Profile updated successfully.");
         } catch (IllegalArgumentException e) {
             System.out.println("Error: " + e.getMessage());
@@ -323,8 +329,8 @@ public class Main {
                 generateReports();
                 break;
             case 5:
-                currentUser.logout();
-                currentUser = null;
+                service.logout(sessionToken);
+                sessionToken = null;
                 break;
             default:
                 System.out.println("Invalid choice. Please try again.");
@@ -335,7 +341,8 @@ public class Main {
         System.out.println("\n=== Manage Flights ===");
         System.out.println("1. Create New Flight");
         System.out.println("2. View All Flights");
-        System.out.println("3. Return to Menu");
+        System.out.println("3. Import Flight Schedule");
+        System.out.println("4. Return to Menu");
         System.out.print("Enter your choice: ");
 
         int choice = scanner.nextInt();
@@ -349,6 +356,9 @@ public class Main {
                 viewAllFlights();
                 break;
             case 3:
+                importFlights();
+                break;
+            case 4:
                 return;
             default:
                 System.out.println("Invalid choice.");
@@ -359,6 +369,12 @@ public class Main {
         System.out.println("\n=== Create New Flight ===");
         System.out.print("Enter flight number: ");
         String flightNumber = scanner.nextLine();
+
+        if (service.getFlights().contains(flightNumber)) {
+            System.out.println("Flight number already exists. Please choose another one.");
+            return;
+        }
+
         System.out.print("Enter airline: ");
         String airline = scanner.nextLine();
         System.out.print("Enter origin: ");
@@ -374,27 +390,26 @@ public class Main {
             LocalDateTime departureTime = LocalDateTime.parse(departureStr, dateFormatter);
             LocalDateTime arrivalTime = LocalDateTime.parse(arrivalStr, dateFormatter);
 
-            Flight flight = ((Agent) currentUser).createFlight(flightNumber, airline, origin, 
-                                                             destination, departureTime, arrivalTime);
-            
-            // Set initial seat prices
+            // Initial seat prices
+            long[] prices = new long[SeatClass.values().length];
             System.out.print("Enter economy class price: $");
-            flight.setPrice(SeatClass.ECONOMY, scanner.nextDouble());
+            prices[SeatClass.ECONOMY.ordinal()] = Money.parse(scanner.next());
             System.out.print("Enter business class price: $");
-            flight.setPrice(SeatClass.BUSINESS, scanner.nextDouble());
+            prices[SeatClass.BUSINESS.ordinal()] = Money.parse(scanner.next());
             System.out.print("Enter first class price: $");
-            flight.setPrice(SeatClass.FIRST_CLASS, scanner.nextDouble());
+            prices[SeatClass.FIRST_CLASS.ordinal()] = Money.parse(scanner.next());
 
-            // Set initial seat availability
+            // Initial seat availability
+            int[] seats = new int[SeatClass.values().length];
             System.out.print("Enter number of economy seats: ");
-            flight.setAvailableSeats(SeatClass.ECONOMY, scanner.nextInt());
+            seats[SeatClass.ECONOMY.ordinal()] = scanner.nextInt();
             System.out.print("Enter number of business seats: ");
-            flight.setAvailableSeats(SeatClass.BUSINESS, scanner.nextInt());
+            seats[SeatClass.BUSINESS.ordinal()] = scanner.nextInt();
             System.out.print("Enter number of first class seats: ");
-            flight.setAvailableSeats(SeatClass.FIRST_CLASS, scanner.nextInt());
+            seats[SeatClass.FIRST_CLASS.ordinal()] = scanner.nextInt();
 
-            flights.add(flight);
-            FileManager.saveFlight(flight);
+            service.createFlight(sessionToken, flightNumber, airline, origin, destination,
+                                 departureTime, arrivalTime, prices, seats);
             System.out.println("Flight created successfully!");
         } catch (DateTimeParseException e) {
             System.out.println("Invalid date format. Please use yyyy-MM-dd HH:mm.");
@@ -403,7 +418,26 @@ public class Main {
         }
     }
 
+    private static void importFlights() {
+        System.out.println("\n=== Import Flight Schedule ===");
+        System.out.println("One flight per line, fields as in flights.txt, separated by | or commas.");
+        System.out.print("Enter file path: ");
+        String path = scanner.nextLine().trim();
+
+        try {
+            FlightImporter.Summary summary = service.importFlights(sessionToken, Paths.get(path));
+            for (String error : summary.getErrors()) {
+                System.out.println("  " + error);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading schedule file: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
     private static void viewAllFlights() {
+        List<Flight> flights = service.listFlights(sessionToken);
         if (flights.isEmpty()) {
             System.out.println("No flights available.");
             return;
@@ -431,10 +465,7 @@ public class Main {
         System.out.print("Enter flight number: ");
         String flightNumber = scanner.nextLine();
         
-        Flight selectedFlight = flights.stream()
-            .filter(f -> f.getFlightNumber().equals(flightNumber))
-            .findFirst()
-            .orElse(null);
+        Flight selectedFlight = service.getFlights().findByFlightNumber(flightNumber);
 
         if (selectedFlight == null) {
             System.out.println("Flight not found.");
@@ -444,10 +475,7 @@ public class Main {
         System.out.print("Enter customer username: ");
         String customerUsername = scanner.nextLine();
         
-        Customer customer = (Customer) users.stream()
-            .filter(u -> u.getRole() == UserRole.CUSTOMER && u.getUsername().equals(customerUsername))
-            .findFirst()
-            .orElse(null);
+        Customer customer = service.getUsers().findCustomer(customerUsername);
 
         if (customer == null) {
             System.out.println("Customer not found.");
@@ -494,26 +522,19 @@ public class Main {
         }
 
         try {
-            Booking booking = ((Agent) currentUser).createBookingForCustomer(
-                customer, selectedFlight, passengers, seatClass);
-            
-            // Save booking and passengers
-            FileManager.saveBooking(booking);
-            for (Passenger passenger : passengers) {
-                FileManager.savePassenger(passenger, booking.getBookingId());
-            }
+            Booking booking = service.createBooking(sessionToken, customer.getUsername(),
+                selectedFlight.getFlightNumber(), seatClass, passengers);
             
             System.out.println("Booking created successfully!");
             System.out.println("Booking ID: " + booking.getBookingId());
-            System.out.println("Total Price: $" + booking.calculateTotalPrice());
+            System.out.println("Total Price: $" + Money.format(booking.getTotalPrice()));
         } catch (IllegalArgumentException | IllegalStateException e) {
             System.out.println("Error: " + e.getMessage());
         }
     }
 
     private static void viewAgentBookings() {
-        Agent agent = (Agent) currentUser;
-        List<Booking> bookings = agent.getManagedBookings();
+        List<Booking> bookings = service.getBookings(sessionToken);
         
         if (bookings.isEmpty()) {
             System.out.println("No bookings found.");
@@ -527,7 +548,7 @@ public class Main {
             System.out.println("Flight: " + booking.getFlight().getFlightNumber());
             System.out.println("Status: " + booking.getStatus());
             System.out.println("Seat Class: " + booking.getSeatClass());
-            System.out.println("Total Price: $" + booking.getTotalPrice());
+            System.out.println("Total Price: $" + Money.format(booking.getTotalPrice()));
             System.out.println("------------------------");
         }
 
@@ -572,7 +593,7 @@ public class Main {
             }
 
             try {
-                agent.modifyBooking(bookingToModify, newSeatClass);
+                service.modifyBooking(sessionToken, bookingToModify.getBookingId(), newSeatClass);
                 System.out.println("Booking modified successfully!");
             } catch (IllegalArgumentException | IllegalStateException e) {
                 System.out.println("Error: " + e.getMessage());
@@ -591,30 +612,32 @@ public class Main {
             LocalDateTime startDate = LocalDateTime.parse(startDateStr + " 00:00", dateFormatter);
             LocalDateTime endDate = LocalDateTime.parse(endDateStr + " 23:59", dateFormatter);
 
-            List<Booking> report = ((Agent) currentUser).generateBookingReport(startDate, endDate);
-            
-            if (report.isEmpty()) {
+            RevenueLedger.Summary summary = service.summarizeAgentBookings(sessionToken,
+                startDate.toLocalDate(), endDate.toLocalDate());
+
+            if (summary.getBookings() + summary.getCancellations() == 0) {
                 System.out.println("No bookings found in the specified date range.");
                 return;
             }
 
             System.out.println("\n=== Booking Report ===");
             System.out.println("Period: " + startDateStr + " to " + endDateStr);
-            System.out.println("Total Bookings: " + report.size());
-            
-            double totalRevenue = 0;
-            for (Booking booking : report) {
+            System.out.println("Total Bookings: " + (summary.getBookings() + summary.getCancellations()));
+            System.out.println("Cancelled: " + summary.getCancellations());
+
+            for (Booking booking : service.getAgentBookingReport(sessionToken,
+                    startDate.toLocalDate(), endDate.toLocalDate())) {
                 System.out.println("\nBooking ID: " + booking.getBookingId());
                 System.out.println("Customer: " + booking.getCustomer().getName());
                 System.out.println("Flight: " + booking.getFlight().getFlightNumber());
                 System.out.println("Status: " + booking.getStatus());
                 System.out.println("Seat Class: " + booking.getSeatClass());
-                System.out.println("Price: $" + booking.getTotalPrice());
-                totalRevenue += booking.getTotalPrice();
+                System.out.println("Price: $" + Money.format(booking.getTotalPrice()));
             }
-            
-            System.out.println("\nTotal Revenue: $" + totalRevenue);
-            System.out.println("Agent Commission: $" + (totalRevenue * 0.05));
+
+            // Totals come from the running ledger; cancelled bookings earn nothing
+            System.out.println("\nTotal Revenue: $" + Money.format(summary.getRevenue()));
+            System.out.println("Agent Commission: $" + Money.format(Money.percentOf(summary.getRevenue(), Agent.COMMISSION_PERCENT)));
         } catch (DateTimeParseException e) {
             System.out.println("Invalid date format. Please use yyyy-MM-dd.");
         }
@@ -625,7 +648,8 @@ public class Main {
         System.out.println("1. Manage Users");
         System.out.println("2. System Settings");
         System.out.println("3. View System Logs");
-        System.out.println("4. Logout");
+        System.out.println("4. System Report");
+        System.out.println("5. Logout");
         System.out.print("Enter your choice: ");
 
         int choice = scanner.nextInt();
@@ -642,8 +666,11 @@ public class Main {
                 viewSystemLogs();
                 break;
             case 4:
-                currentUser.logout();
-                currentUser = null;
+                generateSystemReport();
+                break;
+            case 5:
+                service.logout(sessionToken);
+                sessionToken = null;
                 break;
             default:
                 System.out.println("Invalid choice. Please try again.");
@@ -683,7 +710,7 @@ public class Main {
         System.out.print("Enter username: ");
         String username = scanner.nextLine();
         
-        if (users.stream().anyMatch(u -> u.getUsername().equals(username))) {
+        if (service.getUsers().containsUsername(username)) {
             System.out.println("Username already exists. Please choose another one.");
             return;
         }
@@ -728,10 +755,7 @@ public class Main {
         }
 
         try {
-            User newUser = ((Administrator) currentUser).createUser(
-                username, password, name, email, contactInfo, role);
-            users.add(newUser);
-            FileManager.saveUser(newUser);
+            service.createUser(sessionToken, username, password, name, email, contactInfo, role);
             System.out.println("User created successfully!");
         } catch (IllegalArgumentException | IllegalStateException e) {
             System.out.println("Error: " + e.getMessage());
@@ -739,6 +763,7 @@ public class Main {
     }
 
     private static void viewAllUsers() {
+        List<User> users = service.listUsers(sessionToken);
         if (users.isEmpty()) {
             System.out.println("No users found.");
             return;
@@ -761,10 +786,7 @@ public class Main {
         System.out.print("Enter username to manage: ");
         String username = scanner.nextLine();
         
-        User userToManage = users.stream()
-            .filter(u -> u.getUsername().equals(username))
-            .findFirst()
-            .orElse(null);
+        User userToManage = service.getUsers().findByUsername(username);
 
         if (userToManage == null) {
             System.out.println("User not found.");
@@ -781,7 +803,7 @@ public class Main {
 
         if (choice == 1 || choice == 2) {
             try {
-                ((Administrator) currentUser).manageUserAccess(userToManage, choice == 1);
+                service.manageUserAccess(sessionToken, userToManage.getUsername(), choice == 1);
                 System.out.println("User access " + (choice == 1 ? "granted" : "revoked") + " successfully.");
             } catch (IllegalStateException e) {
                 System.out.println("Error: " + e.getMessage());
@@ -807,7 +829,7 @@ public class Main {
                 String value = scanner.nextLine();
 
                 try {
-                    ((Administrator) currentUser).modifySystemSettings(setting, value);
+                    service.modifySystemSettings(sessionToken, setting, value);
                     System.out.println("Setting modified successfully!");
                 } catch (IllegalStateException e) {
                     System.out.println("Error: " + e.getMessage());
@@ -827,9 +849,48 @@ public class Main {
         }
     }
 
+    private static void generateSystemReport() {
+        System.out.println("\n=== System Report ===");
+        System.out.print("Enter start date (yyyy-MM-dd): ");
+        String startDateStr = scanner.nextLine();
+        System.out.print("Enter end date (yyyy-MM-dd): ");
+        String endDateStr = scanner.nextLine();
+
+        try {
+            SystemReport report = service.generateSystemReport(sessionToken,
+                LocalDate.parse(startDateStr), LocalDate.parse(endDateStr));
+
+            System.out.println("Period: " + startDateStr + " to " + endDateStr);
+            System.out.println("Bookings: " + report.getBookings());
+            System.out.println("Cancellations: " + report.getCancellations());
+            System.out.println("Total Revenue: $" + Money.format(report.getRevenue()));
+
+            System.out.println("\nBy seat class:");
+            for (SeatClass seatClass : SeatClass.values()) {
+                System.out.printf("  %-12s revenue $%s, %d seats sold, load factor %.1f%%%n", seatClass,
+                    Money.format(report.getRevenue(seatClass)), report.getSeatsSold(seatClass),
+                    report.getLoadFactor(seatClass) * 100);
+            }
+
+            System.out.println("\nTop routes:");
+            for (SystemReport.RouteRevenue route : report.getRoutes().subList(0, Math.min(5, report.getRoutes().size()))) {
+                System.out.printf("  %s: $%s from %d bookings%n", route.getRoute(),
+                    Money.format(route.getRevenue()), route.getBookings());
+            }
+
+            System.out.println("\nFullest flights:");
+            for (SystemReport.FlightLoad load : report.getFlightLoads().subList(0, Math.min(5, report.getFlightLoads().size()))) {
+                System.out.printf("  %s: %.1f%% full%n", load.getFlight().getFlightNumber(), load.getLoadFactor() * 100);
+            }
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date format. Please use yyyy-MM-dd.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
     private static void viewSystemLogs() {
-        Administrator admin = (Administrator) currentUser;
-        List<String> logs = admin.getSystemLogs();
+        List<String> logs = service.getSystemLogs(sessionToken);
         
         if (logs.isEmpty()) {
             System.out.println("No system logs found.");
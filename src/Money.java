@@ -0,0 +1,76 @@
+/**
+ * Amounts of money are plain {@code long}s in minor units (cents) of {@link #CURRENCY}, so totals are exact
+ * integer sums. This class only converts to and from the two-decimal text form and does the rounding.
+ */
+public final class Money {
+    public static final String CURRENCY = "USD";
+
+    private Money() {
+    }
+
+    /**
+     * Parses an amount such as {@code 12}, {@code 12.5} or {@code -3.07}; more than two decimals is rejected
+     * rather than silently rounded.
+     */
+    public static long parse(String amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount must be provided");
+        }
+        String value = amount.trim();
+        boolean negative = value.startsWith("-");
+        int i = negative ? 1 : 0;
+        long units = 0;
+        int digits = 0;
+        for (; i < value.length() && value.charAt(i) != '.'; i++) {
+            units = Math.addExact(Math.multiplyExact(units, 10), digit(value, i));
+            digits++;
+        }
+        long cents = 0;
+        int decimals = 0;
+        if (i < value.length()) {
+            for (i++; i < value.length(); i++) {
+                if (++decimals > 2) {
+                    throw new IllegalArgumentException("Amount has more than two decimals: " + amount);
+                }
+                cents = cents * 10 + digit(value, i);
+            }
+        }
+        if (digits + decimals == 0) {
+            throw new IllegalArgumentException("Invalid amount: " + amount);
+        }
+        if (decimals == 1) {
+            cents *= 10;
+        }
+        long total = Math.addExact(Math.multiplyExact(units, 100), cents);
+        return negative ? -total : total;
+    }
+
+    /**
+     * Formats cents with exactly two decimals and no currency symbol, e.g. {@code 1234 -> "12.34"}.
+     */
+    public static String format(long cents) {
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+        return (cents < 0 ? "-" : "") + abs / 100 + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    public static long times(long cents, int quantity) {
+        return Math.multiplyExact(cents, quantity);
+    }
+
+    /**
+     * The given percentage of an amount, rounded half away from zero to the nearest cent.
+     */
+    public static long percentOf(long cents, int percent) {
+        long scaled = Math.multiplyExact(cents, percent);
+        return scaled >= 0 ? (scaled + 50) / 100 : (scaled - 50) / 100;
+    }
+
+    private static int digit(String value, int index) {
+        char c = value.charAt(index);
+        if (c < '0' || c > '9') {
+            throw new IllegalArgumentException("Invalid amount: " + value);
+        }
+        return c - '0';
+    }
+}
@@ -3,14 +3,15 @@ import java.util.UUID;
 
 public class Payment {
     private String paymentId;
-    private double amount;
+    // Cents of currency
+    private long amount;
     private String currency;
     private PaymentMethod method;
     private PaymentStatus status;
     private LocalDateTime transactionTime;
     private String transactionDetails;
 
-    public Payment(double amount, String currency, PaymentMethod method) {
+    public Payment(long amount, String currency, PaymentMethod method) {
         this.paymentId = UUID.randomUUID().toString();
         this.amount = amount;
         this.currency = currency;
@@ -23,7 +24,7 @@ public class Payment {
         return paymentId;
     }
 
-    public double getAmount() {
+    public long getAmount() {
         return amount;
     }
 
@@ -0,0 +1,275 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads pipe-delimited records straight out of a byte buffer, usually a memory-mapped data file.
+ *
+ * A call to {@link #next()} only records where each field starts and ends; numbers, timestamps and enum
+ * constants are parsed from those bytes directly, and a String is only created for fields that are read
+ * with {@link #string(int)}. Fields are trimmed of surrounding whitespace, including a trailing '\r'.
+ */
+public class RecordScanner {
+    private static final int MAX_MAPPING = Integer.MAX_VALUE;
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fieldCount;
+    private byte[] scratch = new byte[64];
+
+    public RecordScanner(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    public static RecordScanner of(String record) {
+        return new RecordScanner(ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Maps a file read-only as one or more buffers, split on line boundaries so no record spans two buffers.
+     */
+    public static List<ByteBuffer> map(Path file) throws IOException {
+        return map(file, MAX_MAPPING);
+    }
+
+    public static List<ByteBuffer> map(Path file, long maxChunkSize) throws IOException {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long offset = 0;
+            while (offset < size) {
+                long length = Math.min(Math.min(maxChunkSize, MAX_MAPPING), size - offset);
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                int end = (int) length;
+                if (offset + length < size) {
+                    // Cut after the last newline; the partial line starts the next chunk
+                    int lastNewline = end - 1;
+                    while (lastNewline >= 0 && mapped.get(lastNewline) != '\n') {
+                        lastNewline--;
+                    }
+                    if (lastNewline < 0) {
+                        throw new IOException("Record longer than " + length + " bytes in " + file);
+                    }
+                    end = lastNewline + 1;
+                }
+                mapped.limit(end);
+                chunks.add(mapped);
+                offset += end;
+            }
+        }
+        return chunks;
+    }
+
+    public boolean next() {
+        while (position < limit) {
+            fieldCount = 0;
+            int fieldStart = position;
+            int i = position;
+            while (i < limit) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    break;
+                }
+                if (b == '|') {
+                    addField(fieldStart, i);
+                    fieldStart = i + 1;
+                }
+                i++;
+            }
+            addField(fieldStart, i);
+            position = i + 1;
+            if (fieldCount > 1 || ends[0] > starts[0]) {
+                return true;
+            }
+        }
+        fieldCount = 0;
+        return false;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public int length(int field) {
+        return ends[checkField(field)] - starts[field];
+    }
+
+    public String string(int field) {
+        int start = starts[checkField(field)];
+        int length = ends[field] - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(start + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public int parseInt(int field) {
+        long value = parseLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Integer out of range in field " + field);
+        }
+        return (int) value;
+    }
+
+    public long parseLong(int field) {
+        int i = starts[checkField(field)];
+        int end = ends[field];
+        boolean negative = i < end && buffer.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == end) {
+            throw new NumberFormatException("Empty number in field " + field);
+        }
+        long value = 0;
+        try {
+            for (; i < end; i++) {
+                value = Math.addExact(Math.multiplyExact(value, 10), digit(i, field));
+            }
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Number '" + string(field) + "' out of range in field " + field);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses an amount with at most two decimals into cents, as {@link Money#parse(String)} does.
+     */
+    public long parseCents(int field) {
+        int i = starts[checkField(field)];
+        int end = ends[field];
+        boolean negative = i < end && buffer.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long units = 0;
+        int digits = 0;
+        try {
+            for (; i < end && buffer.get(i) != '.'; i++) {
+                units = Math.addExact(Math.multiplyExact(units, 10), digit(i, field));
+                digits++;
+            }
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount '" + string(field) + "' out of range in field " + field);
+        }
+        long cents = 0;
+        int decimals = 0;
+        if (i < end) {
+            for (i++; i < end; i++) {
+                if (++decimals > 2) {
+                    throw new NumberFormatException("Amount '" + string(field) + "' has more than two decimals");
+                }
+                cents = cents * 10 + digit(i, field);
+            }
+        }
+        if (digits + decimals == 0) {
+            throw new NumberFormatException("Empty amount in field " + field);
+        }
+        if (decimals == 1) {
+            cents *= 10;
+        }
+        long total;
+        try {
+            total = Math.addExact(Math.multiplyExact(units, 100), cents);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount '" + string(field) + "' out of range in field " + field);
+        }
+        return negative ? -total : total;
+    }
+
+    /**
+     * Parses a {@code yyyy-MM-dd HH:mm} timestamp.
+     */
+    public LocalDateTime parseDateTime(int field) {
+        int i = starts[checkField(field)];
+        if (ends[field] - i != 16 || buffer.get(i + 4) != '-' || buffer.get(i + 7) != '-'
+                || buffer.get(i + 10) != ' ' || buffer.get(i + 13) != ':') {
+            throw new IllegalArgumentException("Invalid timestamp '" + string(field) + "', expected yyyy-MM-dd HH:mm");
+        }
+        return LocalDateTime.of(digits(i, 4, field), digits(i + 5, 2, field), digits(i + 8, 2, field),
+                                digits(i + 11, 2, field), digits(i + 14, 2, field));
+    }
+
+    /**
+     * Matches the field against the constant names, without creating a String.
+     */
+    public <E extends Enum<E>> E parseEnum(int field, E[] values) {
+        int start = starts[checkField(field)];
+        int length = ends[field] - start;
+        for (E value : values) {
+            String name = value.name();
+            if (name.length() == length && matches(start, name)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unknown " + values[0].getDeclaringClass().getSimpleName()
+            + " '" + string(field) + "'");
+    }
+
+    private boolean matches(int start, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            if (buffer.get(start + i) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addField(int start, int end) {
+        while (start < end && isWhitespace(buffer.get(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(buffer.get(end - 1))) {
+            end--;
+        }
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private int checkField(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IllegalArgumentException("Record has no field " + field);
+        }
+        return field;
+    }
+
+    private int digits(int start, int count, int field) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            value = value * 10 + digit(i, field);
+        }
+        return value;
+    }
+
+    private int digit(int index, int field) {
+        int digit = buffer.get(index) - '0';
+        if (digit < 0 || digit > 9) {
+            throw new NumberFormatException("Invalid number '" + string(field) + "' in field " + field);
+        }
+        return digit;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
@@ -0,0 +1,77 @@
+import java.time.LocalDate;
+import java.util.TreeMap;
+
+/**
+ * Running booking totals bucketed by the day a booking was made.
+ *
+ * Bookings post into the ledgers of their flight and, when booked through one, their agent as they are
+ * created, cancelled or repriced, so a report over a date range sums one bucket per day instead of scanning
+ * every booking. Revenue only counts bookings that are not cancelled.
+ */
+public class RevenueLedger {
+    private static final int REVENUE = 0;
+    private static final int BOOKINGS = 1;
+    private static final int CANCELLATIONS = 2;
+
+    // Created on first use, since most flights are never booked
+    private TreeMap<LocalDate, long[]> days;
+
+    /**
+     * Adds the given changes to the bucket for the day the booking was made; negative values take them back.
+     */
+    public synchronized void record(LocalDate day, long revenue, int bookings, int cancellations) {
+        if (days == null) {
+            days = new TreeMap<>();
+        }
+        long[] bucket = days.computeIfAbsent(day, d -> new long[3]);
+        bucket[REVENUE] += revenue;
+        bucket[BOOKINGS] += bookings;
+        bucket[CANCELLATIONS] += cancellations;
+    }
+
+    /**
+     * Totals for bookings made between the two days, both inclusive.
+     */
+    public synchronized Summary summarize(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Start and end dates must be provided");
+        }
+        long revenue = 0;
+        long bookings = 0;
+        long cancellations = 0;
+        if (days != null && !from.isAfter(to)) {
+            for (long[] bucket : days.subMap(from, true, to, true).values()) {
+                revenue += bucket[REVENUE];
+                bookings += bucket[BOOKINGS];
+                cancellations += bucket[CANCELLATIONS];
+            }
+        }
+        return new Summary(revenue, bookings, cancellations);
+    }
+
+    public static class Summary {
+        private final long revenue;
+        private final long bookings;
+        private final long cancellations;
+
+        public Summary(long revenue, long bookings, long cancellations) {
+            this.revenue = revenue;
+            this.bookings = bookings;
+            this.cancellations = cancellations;
+        }
+
+        // Cents, from bookings that are not cancelled
+        public long getRevenue() {
+            return revenue;
+        }
+
+        // Bookings that are not cancelled
+        public long getBookings() {
+            return bookings;
+        }
+
+        public long getCancellations() {
+            return cancellations;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Time limits on reserved bookings: a booking still RESERVED {@code hold.ttlMinutes} (default 15) after it
+ * was made is cancelled, which gives its seats back to the flight.
+ *
+ * Holds are kept in a {@link TimingWheel} rather than as one scheduled task each, so holding, releasing and
+ * expiring a booking cost the same however many holds there are. {@link #start()} advances the wheel every
+ * {@code hold.tickMillis} (default 1000) on a daemon thread; bookings expire up to one tick after their
+ * deadline. A booking confirmed or cancelled in the meantime should be released, but one that is not is
+ * still left alone when its hold expires, since only a RESERVED booking is cancelled.
+ */
+public class SeatHolds {
+    public static final Duration DEFAULT_TTL =
+        Duration.ofMinutes(Math.max(1, Long.getLong("hold.ttlMinutes", 15)));
+    public static final Duration TICK =
+        Duration.ofMillis(Math.max(1, Long.getLong("hold.tickMillis", 1000)));
+
+    private final TimingWheel<Booking> wheel;
+    private final Map<String, TimingWheel.Timeout<Booking>> holds = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final long tickMillis;
+    private final Consumer<Booking> onExpired;
+    private ScheduledExecutorService ticker;
+
+    /**
+     * {@code onExpired} is called, on the ticker thread, with each booking cancelled because its hold ran out.
+     */
+    public SeatHolds(Consumer<Booking> onExpired) {
+        this(DEFAULT_TTL, TICK, onExpired);
+    }
+
+    public SeatHolds(Duration ttl, Duration tick, Consumer<Booking> onExpired) {
+        if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Hold lifetime must be positive");
+        }
+        if (tick == null || tick.toMillis() < 1) {
+            throw new IllegalArgumentException("Tick must be at least one millisecond");
+        }
+        if (onExpired == null) {
+            throw new IllegalArgumentException("Expiry callback cannot be null");
+        }
+        this.ttlMillis = ttl.toMillis();
+        this.tickMillis = tick.toMillis();
+        this.onExpired = onExpired;
+        this.wheel = new TimingWheel<>(System.currentTimeMillis(), tickMillis);
+    }
+
+    /**
+     * Holds a reserved booking's seats until the hold lifetime after the booking was made. A booking whose
+     * hold ran out while nothing was holding it, such as one loaded after the application was stopped, is due
+     * at once and expires on the next tick. Returns false, holding nothing, if the booking is not RESERVED.
+     */
+    public boolean hold(Booking booking) {
+        if (booking == null) {
+            throw new IllegalArgumentException("Booking cannot be null");
+        }
+        if (booking.getStatus() != BookingStatus.RESERVED) {
+            return false;
+        }
+        // The wheel puts a deadline already passed on the next tick
+        long deadline = booking.getBookingTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+            + ttlMillis;
+        TimingWheel.Timeout<Booking> previous = holds.put(booking.getBookingId(), wheel.schedule(booking, deadline));
+        if (previous != null) {
+            wheel.cancel(previous);
+        }
+        return true;
+    }
+
+    /**
+     * Drops the booking's hold, if it has one, once it is confirmed or cancelled.
+     */
+    public void release(Booking booking) {
+        if (booking != null) {
+            wheel.cancel(holds.remove(booking.getBookingId()));
+        }
+    }
+
+    /**
+     * Cancels every booking whose hold has run out and is still RESERVED, and returns how many there were.
+     */
+    public int expire() {
+        List<Booking> due = wheel.advance(System.currentTimeMillis());
+        int expired = 0;
+        for (Booking booking : due) {
+            holds.remove(booking.getBookingId());
+            try {
+                if (booking.expireReservation()) {
+                    expired++;
+                    onExpired.accept(booking);
+                }
+            } catch (RuntimeException e) {
+                // The booking is already out of the wheel; a failure must not keep the others from expiring
+                System.err.println("Error expiring hold on booking " + booking.getBookingId() + ": "
+                    + e.getMessage());
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Expires holds every tick on a daemon thread until {@link #stop()}.
+     */
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "seat-hold-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::expire, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    public Duration getTtl() {
+        return Duration.ofMillis(ttlMillis);
+    }
+
+    public int size() {
+        return holds.size();
+    }
+}
@@ -0,0 +1,63 @@
+import java.time.LocalDateTime;
+
+/**
+ * One signed-in session of a user, as issued by {@link SessionRegistry}.
+ *
+ * Role operations take the session they run in instead of consulting a flag on the user, so the same account
+ * can be signed in several times at once and signing out of one session leaves the others open.
+ */
+public final class Session {
+    private final String token;
+    private final User user;
+    private final LocalDateTime createdAt;
+    private volatile long expiresAt;
+    private volatile boolean open = true;
+
+    Session(String token, User user, long expiresAt) {
+        this.token = token;
+        this.user = user;
+        this.createdAt = LocalDateTime.now();
+        this.expiresAt = expiresAt;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * False once the session has been closed or has expired.
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    // Expiry is System.nanoTime() based and maintained by the registry
+    long getExpiresAt() {
+        return expiresAt;
+    }
+
+    void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    void close() {
+        open = false;
+    }
+
+    @Override
+    public String toString() {
+        return "Session{" +
+                "user='" + user.getUsername() + '\'' +
+                ", createdAt=" + createdAt +
+                ", open=" + open +
+                '}';
+    }
+}
@@ -0,0 +1,141 @@
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The open sessions of all users, by token.
+ *
+ * Tokens are random and a session expires {@code session.ttlMinutes} (default 30) after it was last used.
+ * Expired sessions are closed when their token is next presented, and {@link #startSweeper()} also removes
+ * them every {@code session.sweepSeconds} (default 60) so abandoned sessions do not accumulate. Opening,
+ * finding and closing sessions only touch the session map, never the user, so concurrent logins of the same
+ * account do not contend with each other.
+ */
+public class SessionRegistry {
+    public static final Duration DEFAULT_TTL =
+        Duration.ofMinutes(Math.max(1, Long.getLong("session.ttlMinutes", 30)));
+    public static final Duration SWEEP_INTERVAL =
+        Duration.ofSeconds(Math.max(1, Long.getLong("session.sweepSeconds", 60)));
+
+    private static final int TOKEN_BYTES = 32;
+    private static final SecureRandom random = new SecureRandom();
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private ScheduledExecutorService sweeper;
+
+    public SessionRegistry() {
+        this(DEFAULT_TTL);
+    }
+
+    public SessionRegistry(Duration ttl) {
+        if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Session lifetime must be positive");
+        }
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Opens a session for a user whose password was just verified.
+     */
+    public Session open(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        Session session = new Session(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes), user,
+                                      System.nanoTime() + ttlNanos);
+        sessions.put(session.getToken(), session);
+        return session;
+    }
+
+    /**
+     * Returns the open session with the token, or null if the token is unknown, closed or expired. A
+     * session's lifetime starts over each time it is found.
+     */
+    public Session find(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - session.getExpiresAt() >= 0) {
+            expire(session);
+            return null;
+        }
+        session.setExpiresAt(now + ttlNanos);
+        return session;
+    }
+
+    /**
+     * Closes the session with the token and returns it, or null if there was no open session.
+     */
+    public Session close(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.remove(token);
+        if (session != null) {
+            session.close();
+        }
+        return session;
+    }
+
+    /**
+     * Closes every expired session and returns how many there were.
+     */
+    public int sweep() {
+        long now = System.nanoTime();
+        int swept = 0;
+        for (Session session : sessions.values()) {
+            if (now - session.getExpiresAt() >= 0 && expire(session)) {
+                swept++;
+            }
+        }
+        return swept;
+    }
+
+    /**
+     * Sweeps expired sessions periodically on a daemon thread until {@link #stopSweeper()}.
+     */
+    public synchronized void startSweeper() {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = SWEEP_INTERVAL.toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopSweeper() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    private boolean expire(Session session) {
+        if (sessions.remove(session.getToken(), session)) {
+            session.close();
+            return true;
+        }
+        return false;
+    }
+}
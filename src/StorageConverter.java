@@ -0,0 +1,34 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Converts the flight and booking snapshots between the text and binary formats, run from the data directory
+ * with {@code java -cp src StorageConverter <to-binary|to-text>}. Run it while the application is stopped.
+ */
+public class StorageConverter {
+    public static void main(String[] args) throws IOException {
+        String direction = args.length > 0 ? args[0] : "";
+        switch (direction) {
+            case "to-binary":
+                FileManager.convertToBinary();
+                break;
+            case "to-text":
+                FileManager.convertToText();
+                break;
+            default:
+                System.err.println("Usage: java StorageConverter <to-binary|to-text>");
+                return;
+        }
+        printSize("flights", Paths.get("flights.txt"), Paths.get("flights.bin"));
+        printSize("bookings", Paths.get("bookings.txt"), Paths.get("bookings.bin"));
+    }
+
+    private static void printSize(String name, Path text, Path binary) throws IOException {
+        long textSize = Files.size(text);
+        long binarySize = Files.size(binary);
+        System.out.printf("%s: %,d bytes as text, %,d bytes as binary (%.1fx smaller)%n",
+            name, textSize, binarySize, textSize / (double) Math.max(binarySize, 1));
+    }
+}
@@ -0,0 +1,272 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Revenue, seat class, load factor, cancellation and route figures across every booking in the system.
+ *
+ * Bookings are aggregated with a parallel stream collect: each fork-join worker folds its share into its own
+ * {@link Accumulator} of primitive counters, and the partial accumulators are merged pairwise at the end, so
+ * nothing is shared or locked while scanning. Revenue, bookings and cancellations count bookings made in the
+ * report period. Load factors describe the flights as they are now: seats held by every active booking
+ * against each flight's configured capacity ({@link Flight#getCapacity}).
+ */
+public class SystemReport {
+    private static final SeatClass[] SEAT_CLASSES = SeatClass.values();
+    // Per-flight counters: seats held by active bookings for each seat class, then the period's sales
+    private static final int FLIGHT_REVENUE = SEAT_CLASSES.length;
+    private static final int FLIGHT_BOOKINGS = SEAT_CLASSES.length + 1;
+
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final long bookings;
+    private final long cancellations;
+    private final long revenue;
+    private final long[] revenueBySeatClass;
+    private final long[] seatsSoldBySeatClass;
+    private final long[] seatsHeldBySeatClass;
+    private final long[] capacityBySeatClass;
+    private final List<FlightLoad> flightLoads;
+    private final List<RouteRevenue> routes;
+
+    private SystemReport(LocalDate startDate, LocalDate endDate, Accumulator totals,
+                         long[] capacityBySeatClass, List<FlightLoad> flightLoads, List<RouteRevenue> routes) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.bookings = totals.bookings;
+        this.cancellations = totals.cancellations;
+        this.revenue = totals.revenue;
+        this.revenueBySeatClass = totals.revenueBySeatClass;
+        this.seatsSoldBySeatClass = totals.seatsSoldBySeatClass;
+        this.seatsHeldBySeatClass = totals.seatsHeldBySeatClass;
+        this.capacityBySeatClass = capacityBySeatClass;
+        this.flightLoads = flightLoads;
+        this.routes = routes;
+    }
+
+    /**
+     * Builds the report for bookings made between the two dates, both inclusive.
+     */
+    public static SystemReport generate(FlightRepository flights, Collection<Booking> bookings,
+                                        LocalDate startDate, LocalDate endDate) {
+        if (flights == null || bookings == null || startDate == null || endDate == null) {
+            throw new IllegalArgumentException("Flights, bookings and report period must be provided");
+        }
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("Start date must be before end date");
+        }
+
+        LocalDateTime from = startDate.atStartOfDay();
+        LocalDateTime until = endDate.plusDays(1).atStartOfDay();
+        Accumulator totals = bookings.parallelStream().collect(
+            () -> new Accumulator(from, until), Accumulator::add, Accumulator::merge);
+
+        long[] capacity = new long[SEAT_CLASSES.length];
+        for (Flight flight : flights) {
+            for (SeatClass seatClass : SEAT_CLASSES) {
+                capacity[seatClass.ordinal()] += flight.getCapacity(seatClass);
+            }
+        }
+
+        // Routes are rolled up from the per-flight totals, so the scan never builds a route key per booking
+        List<FlightLoad> flightLoads = new ArrayList<>();
+        Map<String, RouteRevenue> routes = new LinkedHashMap<>();
+        for (Map.Entry<Flight, long[]> entry : totals.byFlight.entrySet()) {
+            Flight flight = entry.getKey();
+            long[] counters = entry.getValue();
+            flightLoads.add(new FlightLoad(flight, counters));
+            if (counters[FLIGHT_BOOKINGS] > 0) {
+                routes.computeIfAbsent(flight.getOrigin() + " -> " + flight.getDestination(), RouteRevenue::new)
+                    .add(counters[FLIGHT_REVENUE], counters[FLIGHT_BOOKINGS]);
+            }
+        }
+        flightLoads.sort(Comparator.comparingDouble((FlightLoad load) -> load.getLoadFactor()).reversed());
+        List<RouteRevenue> topRoutes = new ArrayList<>(routes.values());
+        topRoutes.sort(Comparator.comparingLong(RouteRevenue::getRevenue).reversed());
+
+        return new SystemReport(startDate, endDate, totals, capacity, flightLoads, topRoutes);
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    // Bookings made in the period that are not cancelled
+    public long getBookings() {
+        return bookings;
+    }
+
+    public long getCancellations() {
+        return cancellations;
+    }
+
+    // Cents
+    public long getRevenue() {
+        return revenue;
+    }
+
+    public long getRevenue(SeatClass seatClass) {
+        return revenueBySeatClass[seatClass.ordinal()];
+    }
+
+    public long getSeatsSold(SeatClass seatClass) {
+        return seatsSoldBySeatClass[seatClass.ordinal()];
+    }
+
+    public double getLoadFactor(SeatClass seatClass) {
+        long capacity = capacityBySeatClass[seatClass.ordinal()];
+        return capacity == 0 ? 0 : seatsHeldBySeatClass[seatClass.ordinal()] / (double) capacity;
+    }
+
+    /**
+     * Booked flights, fullest first.
+     */
+    public List<FlightLoad> getFlightLoads() {
+        return Collections.unmodifiableList(flightLoads);
+    }
+
+    /**
+     * Routes with sales in the period, highest revenue first.
+     */
+    public List<RouteRevenue> getRoutes() {
+        return Collections.unmodifiableList(routes);
+    }
+
+    public static class FlightLoad {
+        private final Flight flight;
+        private final long[] seatsHeld;
+
+        private FlightLoad(Flight flight, long[] seatsHeld) {
+            this.flight = flight;
+            this.seatsHeld = seatsHeld;
+        }
+
+        public Flight getFlight() {
+            return flight;
+        }
+
+        public long getSeatsHeld(SeatClass seatClass) {
+            return seatsHeld[seatClass.ordinal()];
+        }
+
+        public double getLoadFactor(SeatClass seatClass) {
+            long capacity = flight.getCapacity(seatClass);
+            return capacity == 0 ? 0 : seatsHeld[seatClass.ordinal()] / (double) capacity;
+        }
+
+        public double getLoadFactor() {
+            long held = 0;
+            long capacity = 0;
+            for (SeatClass seatClass : SEAT_CLASSES) {
+                held += seatsHeld[seatClass.ordinal()];
+                capacity += flight.getCapacity(seatClass);
+            }
+            return capacity == 0 ? 0 : held / (double) capacity;
+        }
+    }
+
+    public static class RouteRevenue {
+        private final String route;
+        private long revenue;
+        private long bookings;
+
+        private RouteRevenue(String route) {
+            this.route = route;
+        }
+
+        private void add(long revenue, long bookings) {
+            this.revenue += revenue;
+            this.bookings += bookings;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        // Cents
+        public long getRevenue() {
+            return revenue;
+        }
+
+        public long getBookings() {
+            return bookings;
+        }
+    }
+
+    // One per fork-join worker; only touched by that worker until merged
+    private static class Accumulator {
+        private final LocalDateTime from;
+        private final LocalDateTime until;
+        private long bookings;
+        private long cancellations;
+        private long revenue;
+        private final long[] revenueBySeatClass = new long[SEAT_CLASSES.length];
+        private final long[] seatsSoldBySeatClass = new long[SEAT_CLASSES.length];
+        private final long[] seatsHeldBySeatClass = new long[SEAT_CLASSES.length];
+        private final Map<Flight, long[]> byFlight = new HashMap<>();
+
+        Accumulator(LocalDateTime from, LocalDateTime until) {
+            this.from = from;
+            this.until = until;
+        }
+
+        void add(Booking booking) {
+            boolean cancelled = booking.getStatus() == BookingStatus.CANCELLED;
+            int seatClass = booking.getSeatClass().ordinal();
+            int seats = booking.getPassengerCount();
+            long[] flight = byFlight.computeIfAbsent(booking.getFlight(), f -> new long[SEAT_CLASSES.length + 2]);
+            if (!cancelled) {
+                flight[seatClass] += seats;
+                seatsHeldBySeatClass[seatClass] += seats;
+            }
+
+            LocalDateTime bookingTime = booking.getBookingTime();
+            if (bookingTime.isBefore(from) || !bookingTime.isBefore(until)) {
+                return;
+            }
+            if (cancelled) {
+                cancellations++;
+                return;
+            }
+            long price = booking.getTotalPrice();
+            bookings++;
+            revenue += price;
+            revenueBySeatClass[seatClass] += price;
+            seatsSoldBySeatClass[seatClass] += seats;
+            flight[FLIGHT_REVENUE] += price;
+            flight[FLIGHT_BOOKINGS]++;
+        }
+
+        void merge(Accumulator other) {
+            bookings += other.bookings;
+            cancellations += other.cancellations;
+            revenue += other.revenue;
+            for (int i = 0; i < SEAT_CLASSES.length; i++) {
+                revenueBySeatClass[i] += other.revenueBySeatClass[i];
+                seatsSoldBySeatClass[i] += other.seatsSoldBySeatClass[i];
+                seatsHeldBySeatClass[i] += other.seatsHeldBySeatClass[i];
+            }
+            for (Map.Entry<Flight, long[]> entry : other.byFlight.entrySet()) {
+                long[] counters = byFlight.get(entry.getKey());
+                if (counters == null) {
+                    byFlight.put(entry.getKey(), entry.getValue());
+                } else {
+                    for (int i = 0; i < counters.length; i++) {
+                        counters[i] += entry.getValue()[i];
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel: many deadlines tracked with O(1) scheduling and cancellation and no task or
+ * thread per deadline.
+ *
+ * Time is counted in ticks of {@code tickMillis}. Level 0 has one slot per tick for the next
+ * {@value #SLOTS} ticks; each higher level has {@value #SLOTS} slots that each cover a whole turn of the level
+ * below. An entry goes into the lowest level whose span reaches its deadline and moves down a level (is
+ * cascaded) when the wheel reaches the start of its slot, so each entry is touched at most once per level
+ * before it expires. Entries expire on the first tick at or after their deadline, so up to one tick late and
+ * never early. Deadlines beyond the top level's span are parked in its farthest slot and placed again when
+ * that slot is cascaded.
+ *
+ * The wheel only moves when {@link #advance(long)} is called; callers drive it from one periodic task. It
+ * is safe for concurrent use. Expired items are returned rather than handed to a callback, so callers can
+ * act on them without holding the wheel's lock.
+ */
+public class TimingWheel<T> {
+    private static final int SLOT_BITS = 9;
+    static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    // Ticks are far from overflowing a long, so the top level's span is the limit
+    private static final long MAX_DELAY_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final long startMillis;
+    private final long tickMillis;
+    private final Timeout<T>[][] wheels;
+    private long currentTick;
+    private int size;
+
+    /**
+     * Starts the wheel at {@code startMillis} on the caller's clock, the same clock later deadlines and
+     * {@link #advance(long)} times are given in.
+     */
+    public TimingWheel(long startMillis, long tickMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick must be at least one millisecond");
+        }
+        this.startMillis = startMillis;
+        this.tickMillis = tickMillis;
+        // Generic arrays cannot be created, so the slots are made raw; only Timeout<T> is ever stored in them
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Timeout<T>[][] wheels = new Timeout[LEVELS][SLOTS];
+        this.wheels = wheels;
+        for (Timeout<T>[] wheel : wheels) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheel[slot] = new Timeout<>(null, 0);
+            }
+        }
+    }
+
+    /**
+     * A scheduled entry. Cancelling it takes it out of the wheel.
+     */
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadlineTick;
+        // Slots are circular lists headed by an empty sentinel; a node outside the wheel links to nothing
+        private Timeout<T> previous;
+        private Timeout<T> next;
+
+        private Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+            if (item == null) {
+                previous = this;
+                next = this;
+            }
+        }
+
+        public T getItem() {
+            return item;
+        }
+    }
+
+    public synchronized Timeout<T> schedule(T item, long deadlineMillis) {
+        if (item == null) {
+            throw new IllegalArgumentException("Item cannot be null");
+        }
+        // Rounded up, so nothing expires before its deadline; one already due expires on the next tick
+        long deadlineTick = Math.max(currentTick + 1,
+                                     Math.floorDiv(deadlineMillis - startMillis + tickMillis - 1, tickMillis));
+        Timeout<T> timeout = new Timeout<>(item, deadlineTick);
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Takes the entry out of the wheel; returns false if it had already expired or been cancelled.
+     */
+    public synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout == null || timeout.next == null) {
+            return false;
+        }
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves the wheel up to the given time and returns the items whose deadlines have passed.
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        List<T> expired = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Cascade from the highest level that turned over on this tick, so entries fall through every level
+            int level = 0;
+            while (level + 1 < LEVELS && (currentTick & ((1L << (SLOT_BITS * (level + 1))) - 1)) == 0) {
+                level++;
+            }
+            for (; level > 0; level--) {
+                Timeout<T> head = wheels[level][slot(currentTick, level)];
+                for (Timeout<T> timeout = head.next; timeout != head; ) {
+                    Timeout<T> next = timeout.next;
+                    unlink(timeout);
+                    place(timeout);
+                    timeout = next;
+                }
+            }
+            Timeout<T> head = wheels[0][slot(currentTick, 0)];
+            for (Timeout<T> timeout = head.next; timeout != head; ) {
+                Timeout<T> next = timeout.next;
+                unlink(timeout);
+                size--;
+                expired.add(timeout.item);
+                timeout = next;
+            }
+        }
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Cascaded entries may be due on the current tick; they land in the level 0 slot that is expired next
+    private void place(Timeout<T> timeout) {
+        long delay = Math.min(timeout.deadlineTick - currentTick, MAX_DELAY_TICKS);
+        long tick = currentTick + delay;
+        int level = 0;
+        while (level + 1 < LEVELS && delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        Timeout<T> head = wheels[level][slot(tick, level)];
+        timeout.previous = head.previous;
+        timeout.next = head;
+        head.previous.next = timeout;
+        head.previous = timeout;
+    }
+
+    private static int slot(long tick, int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    }
+
+    private static <T> void unlink(Timeout<T> timeout) {
+        timeout.previous.next = timeout.next;
+        timeout.next.previous = timeout.previous;
+        timeout.previous = null;
+        timeout.next = null;
+    }
+}
@@ -1,19 +1,27 @@
 import java.io.Serializable;
 import java.util.UUID;
-import java.util.regex.Pattern;
 
 public abstract class User implements Serializable {
     private static final long serialVersionUID = 1L;
     private String userId;
     private String username;
-    private String password;
+    // A PasswordHasher hash; plain text saved before hashing was introduced is hashed when users are loaded
+    private volatile String passwordHash;
     private String name;
     private String email;
     private String contactInfo;
     private UserRole role;
-    private boolean isLoggedIn;
 
     public User(String username, String password, String name, String email, String contactInfo, UserRole role) {
+        this(username, password, name, email, contactInfo, role, false);
+    }
+
+    /**
+     * With {@code stored} set, the password is the saved hash and the email is taken as it is: both were
+     * validated when the account was created, so loading saved accounts does not check them again.
+     */
+    protected User(String username, String password, String name, String email, String contactInfo, UserRole role,
+                   boolean stored) {
         if (username == null || username.trim().isEmpty()) {
             throw new IllegalArgumentException("Username cannot be null or empty");
         }
@@ -27,17 +35,24 @@ public abstract class User implements Serializable {
             throw new IllegalArgumentException("Role cannot be null");
         }
 
-        this.userId = UUID.randomUUID().toString();
         this.username = username;
-        this.setPassword(password);
+        if (stored) {
+            this.passwordHash = password;
+            this.email = email;
+        } else {
+            this.setPassword(password);
+            this.setEmail(email);
+        }
         this.name = name;
-        this.setEmail(email);
         this.contactInfo = contactInfo;
         this.role = role;
-        this.isLoggedIn = false;
     }
 
-    public String getUserId() {
+    // Ids are not saved, so one is only drawn (from SecureRandom) for accounts that are asked for it
+    public synchronized String getUserId() {
+        if (userId == null) {
+            userId = UUID.randomUUID().toString();
+        }
         return userId;
     }
 
@@ -49,15 +64,28 @@ public abstract class User implements Serializable {
         this.username = username;
     }
 
-    public String getPassword() {
-        return password;
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    /**
+     * Replaces a password an older version stored in plain text with its hash. Returns false, changing
+     * nothing, if the stored password is already hashed.
+     */
+    boolean hashPlainTextPassword() {
+        String stored = passwordHash;
+        if (stored == null || PasswordHasher.isHashed(stored)) {
+            return false;
+        }
+        passwordHash = PasswordHasher.hash(stored);
+        return true;
     }
 
     public void setPassword(String password) {
-        if (isValidPassword(password)) {
-            this.password = password;
+        if (UserValidator.isValidPassword(password)) {
+            this.passwordHash = PasswordHasher.hash(password);
         } else {
-            throw new IllegalArgumentException("Password must be at least 8 characters long, contain at least one uppercase letter, one lowercase letter, one number, and one special character");
+            throw new IllegalArgumentException(UserValidator.PASSWORD_RULES);
         }
     }
 
@@ -74,7 +102,7 @@ public abstract class User implements Serializable {
     }
 
     public void setEmail(String email) {
-        if (isValidEmail(email)) {
+        if (UserValidator.isValidEmail(email)) {
             this.email = email;
         } else {
             throw new IllegalArgumentException("Invalid email format");
@@ -93,67 +121,58 @@ public abstract class User implements Serializable {
         return role;
     }
 
-    private boolean isValidPassword(String password) {
-        if (password == null) return false;
-        
-        if (password.length() < 8) return false;
-        
-        if (!Pattern.compile("[A-Z]").matcher(password).find()) return false;
-        
-        if (!Pattern.compile("[a-z]").matcher(password).find()) return false;
-        
-        if (!Pattern.compile("\\d").matcher(password).find()) return false;
-        
-        if (!Pattern.compile("[!@#$%^&*(),.?\":{}|<>]").matcher(password).find()) return false;
-        
-        return true;
-    }
-
-    private boolean isValidEmail(String email) {
-        if (email == null) return false;
-        
-        String emailPattern = "^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$";
-        return Pattern.matches(emailPattern, email);
-    }
-
+    /**
+     * Checks the credentials. Signing in does not change the user: the caller opens a {@link Session} for it,
+     * and the same account may have several at once.
+     */
     public boolean login(String username, String password) {
         if (username == null || password == null) {
             throw new IllegalArgumentException("Username and password cannot be null");
         }
-        
-        if (this.username.equals(username) && this.password.equals(password)) {
-            this.isLoggedIn = true;
-            return true;
-        }
-        return false;
+
+        return this.username.equals(username) && verifyPassword(password);
     }
 
-    public void logout() {
-        if (!isLoggedIn) {
-            throw new IllegalStateException("User is not logged in");
+    /**
+     * Checks the password against the stored hash. A password hashed with a different work factor is hashed
+     * again with the current one, so callers should save the user when {@link #getPasswordHash()} has changed.
+     */
+    public boolean verifyPassword(String password) {
+        String stored = passwordHash;
+        if (!PasswordHasher.verify(password, stored)) {
+            return false;
+        }
+        if (PasswordHasher.needsRehash(stored)) {
+            passwordHash = PasswordHasher.hash(password);
         }
-        this.isLoggedIn = false;
+        return true;
     }
 
-    public void updateProfile() {
-        if (!isLoggedIn) {
-            throw new IllegalStateException("User must be logged in to update profile");
-        }
+    public void logout(Session session) {
+        requireSession(session, "User is not logged in");
     }
 
-    public boolean isLoggedIn() {
-        return isLoggedIn;
+    public void updateProfile(Session session) {
+        requireSession(session, "User must be logged in to update profile");
+    }
+
+    /**
+     * Throws IllegalStateException with the message unless the session is open and belongs to this user.
+     */
+    protected void requireSession(Session session, String message) {
+        if (session == null || session.getUser() != this || !session.isOpen()) {
+            throw new IllegalStateException(message);
+        }
     }
 
     @Override
     public String toString() {
         return "User{" +
-                "userId='" + userId + '\'' +
+                "userId='" + getUserId() + '\'' +
                 ", username='" + username + '\'' +
                 ", name='" + name + '\'' +
                 ", email='" + email + '\'' +
                 ", role=" + role +
-                ", isLoggedIn=" + isLoggedIn +
                 '}';
     }
 } 
\ No newline at end of file
@@ -0,0 +1,115 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every user account, indexed by username for login and lookups and by email to keep emails unique.
+ *
+ * Both indexes are concurrent hash maps, so a lookup costs the same however many accounts there are and
+ * readers never block writers. Emails are compared case-insensitively. Accounts are listed in no particular
+ * order.
+ */
+public class UserDirectory implements Iterable<User> {
+    private final Map<String, User> usersByUsername = new ConcurrentHashMap<>();
+    private final Map<String, User> usersByEmail = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a new account, unless its username or email is already taken.
+     */
+    public boolean add(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+        if (usersByUsername.putIfAbsent(user.getUsername(), user) != null) {
+            return false;
+        }
+        if (usersByEmail.putIfAbsent(emailKey(user.getEmail()), user) != null) {
+            usersByUsername.remove(user.getUsername(), user);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds or replaces the account for the user's username, as when a later record in the data files
+     * supersedes an earlier one. Stored accounts are not rejected for sharing an email; the email index keeps
+     * whichever account claimed it first.
+     */
+    public void put(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+        User previous = usersByUsername.put(user.getUsername(), user);
+        if (previous != null) {
+            usersByEmail.remove(emailKey(previous.getEmail()), previous);
+        }
+        usersByEmail.putIfAbsent(emailKey(user.getEmail()), user);
+    }
+
+    /**
+     * Changes a user's email, keeping the email index in step.
+     */
+    public void changeEmail(User user, String email) {
+        if (email == null) {
+            throw new IllegalArgumentException("Invalid email format");
+        }
+        String oldKey = emailKey(user.getEmail());
+        String newKey = emailKey(email);
+        if (newKey.equals(oldKey)) {
+            user.setEmail(email);
+            return;
+        }
+        if (usersByEmail.putIfAbsent(newKey, user) != null) {
+            throw new IllegalArgumentException("Email is already registered");
+        }
+        try {
+            user.setEmail(email);
+        } catch (IllegalArgumentException e) {
+            usersByEmail.remove(newKey, user);
+            throw e;
+        }
+        usersByEmail.remove(oldKey, user);
+    }
+
+    public User findByUsername(String username) {
+        return username == null ? null : usersByUsername.get(username);
+    }
+
+    public Customer findCustomer(String username) {
+        User user = findByUsername(username);
+        return user instanceof Customer ? (Customer) user : null;
+    }
+
+    public boolean containsUsername(String username) {
+        return username != null && usersByUsername.containsKey(username);
+    }
+
+    public boolean containsEmail(String email) {
+        return email != null && usersByEmail.containsKey(emailKey(email));
+    }
+
+    public List<User> getAll() {
+        return new ArrayList<>(usersByUsername.values());
+    }
+
+    public int size() {
+        return usersByUsername.size();
+    }
+
+    public boolean isEmpty() {
+        return usersByUsername.isEmpty();
+    }
+
+    @Override
+    public Iterator<User> iterator() {
+        return Collections.unmodifiableCollection(usersByUsername.values()).iterator();
+    }
+
+    private static String emailKey(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
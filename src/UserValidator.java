@@ -0,0 +1,78 @@
+/**
+ * Password and email rules for user accounts.
+ *
+ * Both checks are a single pass over the characters, with no regular expression compiled or run per call.
+ * The rules are the ones the account forms have always enforced: a password of at least 8 characters with
+ * an uppercase letter, a lowercase letter, a digit and one of {@link #SPECIAL_CHARACTERS}, and an email of
+ * the form {@code local@domain.tld} where the top-level domain is at least two letters.
+ */
+public final class UserValidator {
+    public static final String SPECIAL_CHARACTERS = "!@#$%^&*(),.?\":{}|<>";
+    public static final String PASSWORD_RULES = "Password must be at least 8 characters long, contain at least one uppercase letter, one lowercase letter, one number, and one special character";
+
+    private UserValidator() {
+    }
+
+    public static boolean isValidPassword(String password) {
+        if (password == null || password.length() < 8) {
+            return false;
+        }
+        boolean upper = false;
+        boolean lower = false;
+        boolean digit = false;
+        boolean special = false;
+        for (int i = 0; i < password.length(); i++) {
+            char c = password.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                upper = true;
+            } else if (c >= 'a' && c <= 'z') {
+                lower = true;
+            } else if (c >= '0' && c <= '9') {
+                digit = true;
+            } else if (SPECIAL_CHARACTERS.indexOf(c) >= 0) {
+                special = true;
+            }
+        }
+        return upper && lower && digit && special;
+    }
+
+    public static boolean isValidEmail(String email) {
+        if (email == null) {
+            return false;
+        }
+        int at = email.indexOf('@');
+        if (at <= 0) {
+            return false;
+        }
+        for (int i = 0; i < at; i++) {
+            char c = email.charAt(i);
+            if (!isLetterOrDigit(c) && c != '+' && c != '_' && c != '.' && c != '-') {
+                return false;
+            }
+        }
+        int lastDot = -1;
+        for (int i = at + 1; i < email.length(); i++) {
+            char c = email.charAt(i);
+            if (c == '.') {
+                lastDot = i;
+            } else if (!isLetterOrDigit(c) && c != '-') {
+                return false;
+            }
+        }
+        // At least one domain character before the last dot, and two or more letters after it
+        if (lastDot < at + 2 || email.length() - lastDot - 1 < 2) {
+            return false;
+        }
+        for (int i = lastDot + 1; i < email.length(); i++) {
+            char c = email.charAt(i);
+            if (!(c >= 'A' && c <= 'Z') && !(c >= 'a' && c <= 'z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+}
@@ -0,0 +1,106 @@
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Tries to plant an administrator account by smuggling a record delimiter and a line break into a
+ * registration field, through the HTTP service and through the service directly, and a second flight record
+ * through a comma-separated schedule import, and checks that nothing reaches users.txt or flights.txt after
+ * compaction and a restart. Run from an empty directory; see the README.
+ */
+public class InjectionTest {
+    private static final String INJECTED_ADDRESS = "addr\nevil|Evil123!|Evil|evil@x.com|1|x|ADMINISTRATOR";
+
+    public static void main(String[] args) throws Exception {
+        if (Files.exists(Paths.get("users.txt"))) {
+            throw new IllegalStateException("Run from an empty directory; this test writes the data files");
+        }
+        BookingService service = BookingService.load();
+
+        BookingServer server = new BookingServer(service,
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        try {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/register"))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(form("username", "mallory", "password", "Passw0rd!",
+                        "name", "Mallory", "email", "mallory@example.com", "contactInfo", "555",
+                        "address", INJECTED_ADDRESS)))
+                    .build(),
+                HttpResponse.BodyHandlers.ofString());
+            check(response.statusCode() == 400, "POST /register with an injected address answered "
+                + response.statusCode());
+        } finally {
+            server.stop();
+        }
+
+        expectRejected(() -> service.register("mallory|x", "Passw0rd!", "Mallory", "mallory@example.com", "555",
+                                              "Street"), "username with '|'");
+        expectRejected(() -> service.register("mallory", "Passw0rd!", "Mal\rlory", "mallory@example.com", "555",
+                                              "Street"), "name with a carriage return");
+        // The format helpers refuse the same values even when the service is bypassed
+        expectRejected(() -> FileManager.saveUser(new Customer("mallory", PasswordHasher.hash("Passw0rd!", 1),
+            "Mallory", "mallory@example.com", "555", INJECTED_ADDRESS, true)), "saving an injected address");
+
+        service.register("alice", "Passw0rd!", "Alice", "alice@example.com", "555", "1 Main St");
+
+        FlightImporter.Summary imported = new FlightImporter(new FlightRepository(), 100, null).importFrom(
+            new BufferedReader(new StringReader(
+                "GOOD1,Airline,New York,London,2030-01-01 10:00,2030-01-01 17:00,500,1500,3000,100,20,10\n"
+                + "EVIL1,Airline|x|y,New York,London,2030-01-01 10:00,2030-01-01 17:00,500,1500,3000,100,20,10\n")));
+        check(imported.getImported() == 1 && imported.getRejected() == 1,
+              "comma-separated import with a '|' in a field: " + imported);
+        FileManager.compact();
+        FileManager.closeJournal();
+
+        FileManager.initializeFiles();
+        UserDirectory users = FileManager.loadUsers();
+        check(users.findByUsername("evil") == null, "the injected evil account was loaded");
+        check(users.findByUsername("mallory") == null, "a rejected registration was saved");
+        check(users.findByUsername("alice") != null, "a valid registration did not survive compaction");
+        for (String line : Files.readAllLines(Paths.get("users.txt"))) {
+            check(!line.startsWith("evil|"), "users.txt has an injected record: " + line);
+        }
+        FlightRepository flights = FileManager.loadFlights();
+        check(flights.findByFlightNumber("GOOD1") != null, "an imported flight did not survive compaction");
+        check(flights.findByFlightNumber("EVIL1") == null, "a flight with a '|' in a field was imported");
+        FileManager.closeJournal();
+        System.out.println("InjectionTest passed");
+    }
+
+    private static void expectRejected(Runnable action, String description) {
+        try {
+            action.run();
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new AssertionError("Accepted " + description);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    private static String form(String... pairs) {
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (form.length() > 0) {
+                form.append('&');
+            }
+            form.append(pairs[i]).append('=').append(URLEncoder.encode(pairs[i + 1], StandardCharsets.UTF_8));
+        }
+        return form.toString();
+    }
+}
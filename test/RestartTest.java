@@ -0,0 +1,161 @@
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Books seats, restarts (closes the journal and loads everything again, before and after compaction) and
+ * checks that the flight's available seats are what the bookings left, not its full capacity; then cancels
+ * the booking and checks the seats come back exactly once. The agent who made the booking must still have it,
+ * and be able to confirm it, after a restart. A reserved booking whose hold runs out after a restart, or ran
+ * out while the application was stopped, must give back the seats it took on load. Run from an empty
+ * directory; see the README.
+ */
+public class RestartTest {
+    private static final String FLIGHT = "RT100";
+
+    public static void main(String[] args) throws InterruptedException {
+        if (Files.exists(Paths.get("users.txt"))) {
+            throw new IllegalStateException("Run from an empty directory; this test writes the data files");
+        }
+        FileManager.initializeFiles();
+        FileManager.saveUser(new Agent("agent", PasswordHasher.hash("Agent123!"), "Agent", "agent@example.com",
+                                       "555", "Tours", true));
+        FileManager.saveUser(new Customer("customer", PasswordHasher.hash("Customer123!"), "Customer",
+                                          "customer@example.com", "555", "1 Main St", true));
+        LocalDateTime departure = LocalDateTime.now().plusDays(30).withNano(0).withSecond(0);
+        Flight flight = new Flight(FLIGHT, "Airline", "New York", "London", departure, departure.plusHours(7));
+        flight.setPrice(SeatClass.ECONOMY, 500_00L);
+        flight.setAvailableSeats(SeatClass.ECONOMY, 100);
+        FileManager.saveFlight(flight);
+        FileManager.closeJournal();
+
+        BookingService service = BookingService.load();
+        String agent = service.login("agent", "Agent123!");
+        Booking booking = service.createBooking(agent, "customer", FLIGHT, SeatClass.ECONOMY, List.of(
+            new Passenger("Ann", "Lee", "P1", "US", "1990-01-01"),
+            new Passenger("Bob", "Lee", "P2", "US", "1991-01-01")));
+        checkSeats(service, 98, "after booking");
+
+        service = restart(service);
+        checkSeats(service, 98, "after a restart");
+        checkAgentBookings(service, booking, "after a restart");
+
+        FileManager.compact();
+        service = restart(service);
+        checkSeats(service, 98, "after compaction and a restart");
+        checkAgentBookings(service, booking, "after compaction and a restart");
+        service.confirmBooking(service.login("agent", "Agent123!"), booking.getBookingId());
+
+        String customer = service.login("customer", "Customer123!");
+        service.cancelBooking(customer, booking.getBookingId());
+        checkSeats(service, 100, "after cancelling");
+        try {
+            service.getFlights().findByFlightNumber(FLIGHT).release(SeatClass.ECONOMY, 1);
+            throw new AssertionError("Released a seat beyond the flight's capacity");
+        } catch (IllegalStateException e) {
+            checkSeats(service, 100, "after a refused release");
+        }
+
+        service = restart(service);
+        checkSeats(service, 100, "after cancelling and a restart");
+
+        customer = service.login("customer", "Customer123!");
+        String reservedId = service.createBooking(customer, null, FLIGHT, SeatClass.ECONOMY, List.of(
+            new Passenger("Cy", "Lee", "P3", "US", "1992-01-01"))).getBookingId();
+        service = restart(service);
+        checkSeats(service, 99, "after reserving and a restart");
+        expireHold(service, reservedId);
+        checkSeats(service, 100, "after a reloaded hold expired");
+        service = restart(service);
+        checkSeats(service, 100, "after a reloaded hold expired and a restart");
+
+        // A reservation made while the hold lifetime was still running, whose hold ran out while stopped
+        Booking stale = new Booking("RT-STALE", service.getUsers().findCustomer("customer"),
+            service.getFlights().findByFlightNumber(FLIGHT),
+            List.of(new Passenger("Di", "Lee", "P4", "US", "1993-01-01")), SeatClass.ECONOMY, BookingStatus.RESERVED,
+            LocalDateTime.now().minus(SeatHolds.DEFAULT_TTL).minusHours(1).withSecond(0).withNano(0), 500_00L);
+        FileManager.saveBookings(List.of(stale));
+        service = restart(service);
+        awaitCancelled(service, stale.getBookingId(), "when its hold ran out while stopped");
+        checkSeats(service, 100, "after a hold that ran out while stopped was expired");
+        service = restart(service);
+        awaitCancelled(service, stale.getBookingId(), "after its expiry and a restart");
+        checkSeats(service, 100, "after a hold that ran out while stopped was expired and a restart");
+
+        FileManager.closeJournal();
+        System.out.println("RestartTest passed");
+    }
+
+    private static BookingService restart(BookingService service) {
+        service.getHolds().stop();
+        service.getSessions().stopSweeper();
+        FileManager.closeJournal();
+        return BookingService.load();
+    }
+
+    // The service's own holds expire the booking on their next tick
+    private static void awaitCancelled(BookingService service, String bookingId, String when)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10 * SeatHolds.TICK.toMillis() + 5000;
+        while (true) {
+            Booking booking = findBooking(service, bookingId);
+            if (booking.getStatus() == BookingStatus.CANCELLED) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Booking " + bookingId + " is still " + booking.getStatus() + " " + when);
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static Booking findBooking(BookingService service, String bookingId) {
+        for (Booking booking : service.getBookings(service.login("customer", "Customer123!"))) {
+            if (booking.getBookingId().equals(bookingId)) {
+                return booking;
+            }
+        }
+        throw new AssertionError("Booking " + bookingId + " did not load");
+    }
+
+    // Holds the reloaded booking until just after now and lets it expire, as the service's holds would later
+    private static void expireHold(BookingService service, String bookingId) throws InterruptedException {
+        Booking booking = findBooking(service, bookingId);
+        if (booking.getStatus() != BookingStatus.RESERVED) {
+            throw new AssertionError("The reserved booking did not load as reserved");
+        }
+        Duration ttl = Duration.between(booking.getBookingTime(), LocalDateTime.now()).plusMillis(200);
+        SeatHolds holds = new SeatHolds(ttl, Duration.ofMillis(1), FileManager::saveBooking);
+        if (!holds.hold(booking)) {
+            throw new AssertionError("The reloaded booking could not be held");
+        }
+        Thread.sleep(400);
+        if (holds.expire() != 1 || booking.getStatus() != BookingStatus.CANCELLED) {
+            throw new AssertionError("The reloaded booking's hold did not expire");
+        }
+    }
+
+    // The agent who made the booking still manages it and its ledger still counts it
+    private static void checkAgentBookings(BookingService service, Booking booking, String when) {
+        String agent = service.login("agent", "Agent123!");
+        List<Booking> managed = service.getBookings(agent);
+        if (managed.size() != 1 || !managed.get(0).getBookingId().equals(booking.getBookingId())) {
+            throw new AssertionError("The agent manages " + managed.size() + " bookings " + when);
+        }
+        LocalDate day = booking.getBookingTime().toLocalDate();
+        long counted = service.summarizeAgentBookings(agent, day, day).getBookings();
+        if (counted != 1) {
+            throw new AssertionError("The agent's ledger counts " + counted + " bookings " + when);
+        }
+    }
+
+    private static void checkSeats(BookingService service, int expected, String when) {
+        int available = service.getFlights().findByFlightNumber(FLIGHT).getAvailableSeats(SeatClass.ECONOMY);
+        if (available != expected) {
+            throw new AssertionError("Expected " + expected + " economy seats " + when + " but found " + available);
+        }
+    }
+}